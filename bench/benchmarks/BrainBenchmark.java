@@ -0,0 +1,71 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package benchmarks;
+
+import automatastarter.Brain;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of one generation of the reference Brain across grid sizes,
+ * soup densities, birth numbers and wrapping.
+ * The soup is restored every iteration so the density being measured does
+ * not decay while the benchmark runs
+ * @author paul
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BrainBenchmark {
+    @Param({"16", "128", "512", "2048"})
+    public int size;
+
+    // Fraction of cells that start ON
+    @Param({"0.1", "0.5"})
+    public double density;
+
+    @Param({"1", "2", "3"})
+    public int birthNumber;
+
+    @Param({"true", "false"})
+    public boolean wrapping;
+
+    private Brain brain;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        brain = new Brain(size, size, birthNumber, wrapping);
+        // The same seed gives every run the same soup
+        Random random = new Random(42);
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                if (random.nextDouble() < density) {
+                    brain.setState(i, j, Brain.ON);
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public int update() {
+        brain.update();
+        return brain.getOnCount();
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package benchmarks;
+
+import automatastarter.Brain;
+import automatastarter.HaloBrain;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the ghost border kernel of HaloBrain with the reference Brain,
+ * both started from the same random soup
+ * @author paul
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HaloBenchmark {
+    @Param({"64", "512", "4096"})
+    public int size;
+
+    @Param({"true", "false"})
+    public boolean wrapping;
+
+    private Brain brain;
+    private HaloBrain halo;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        brain = new Brain(size, size, 2, wrapping);
+        halo = new HaloBrain(size, size, 2, wrapping);
+        // Every iteration starts from the same soup, a soup stepped for a whole trial dies down
+        Random random = new Random(42);
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                if (random.nextBoolean()) {
+                    brain.setState(i, j, Brain.ON);
+                    halo.setState(i, j, Brain.ON);
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public int brainUpdate() {
+        brain.update();
+        return brain.getOnCount();
+    }
+
+    @Benchmark
+    public int haloUpdate() {
+        halo.update();
+        return halo.getOnCount();
+    }
+}
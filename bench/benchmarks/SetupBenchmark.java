@@ -0,0 +1,68 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package benchmarks;
+
+import automatastarter.Brain;
+import automatastarter.PatternLibrary;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of filling a grid with a random soup and of loading patterns from
+ * the library, which parses the RLE file and also clears the grid
+ * @author paul
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SetupBenchmark {
+    @Param({"64", "512", "2048"})
+    public int size;
+
+    private Brain brain;
+    private PatternLibrary library;
+    private int oscillator;
+    private int expanding;
+
+    @Setup
+    public void setUp() {
+        brain = new Brain(size, size, 2, true);
+        library = new PatternLibrary();
+        oscillator = library.indexOf("Oscillator");
+        expanding = library.indexOf("Expanding");
+    }
+
+    @Benchmark
+    public int randomize() {
+        brain.randomize();
+        return brain.getOnCount();
+    }
+
+    @Benchmark
+    public int loadOscillator() throws IOException {
+        library.load(oscillator, brain);
+        return brain.getOnCount();
+    }
+
+    @Benchmark
+    public int loadExpanding() throws IOException {
+        library.load(expanding, brain);
+        return brain.getOnCount();
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package benchmarks;
+
+import automatastarter.Brain;
+import automatastarter.HaloBrain;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Generations per second of the SIMD kernel against the scalar ghost border
+ * kernel and the reference Brain on large fields, the SIMD kernel is only
+ * built with ant -Dvector.enabled=true bench
+ * @author paul
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules=jdk.incubator.vector", "-Xmx2g"})
+public class VectorBenchmark {
+    @Param({"1024", "8192"})
+    public int size;
+
+    private Brain brain;
+    private HaloBrain scalar;
+    private HaloBrain vector;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        brain = new Brain(size, size, 2, true);
+        scalar = new HaloBrain(size, size, 2, true);
+        vector = new HaloBrain(size, size, 2, true);
+        vector.setVectorized(true);
+        if (!vector.isVectorized()) {
+            throw new IllegalStateException("The SIMD kernel is not available, run with ant -Dvector.enabled=true bench");
+        }
+        // A new soup for every iteration, the fixed seed makes it the same one for all three models
+        Random random = new Random(42);
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                if (random.nextBoolean()) {
+                    brain.setState(i, j, Brain.ON);
+                    scalar.setState(i, j, Brain.ON);
+                    vector.setState(i, j, Brain.ON);
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public int brainUpdate() {
+        brain.update();
+        return brain.getOnCount();
+    }
+
+    @Benchmark
+    public int scalarUpdate() {
+        scalar.update();
+        return scalar.getOnCount();
+    }
+
+    @Benchmark
+    public int vectorUpdate() {
+        vector.update();
+        return vector.getOnCount();
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package automatastarter;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Iterator;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.FileImageOutputStream;
+import javax.imageio.stream.ImageOutputStream;
+
+/**
+ * Writes generations of a run as an animated GIF, or as numbered PNG files.
+ * Every generation is drawn into the same indexed image, with the colors of
+ * the grid panel, and written out before the next one, so a run of any
+ * length is exported without holding more than one frame in memory
+ * @author paul
+ */
+public class AnimationExporter implements Closeable {
+    // Metadata format of the GIF writer
+    private static final String GIF_FORMAT = "javax_imageio_gif_image_1.0";
+
+    // Initialise variables
+    private final BufferedImage image;
+    private final byte[] pixels;
+    // States of one generation, only needed when cells are larger than a pixel
+    private final byte[] states;
+    private final int width;
+    private final int height;
+    private final int scale;
+    // Animated GIF writer, null when writing PNG files
+    private final ImageWriter gif;
+    private final ImageOutputStream out;
+    private final IIOMetadata firstFrame;
+    private final IIOMetadata nextFrames;
+    // File name of the PNG files before the frame number
+    private final String prefix;
+    private int frames;
+
+    /**
+     * Constructor, starts an animation. A file ending in .gif is written as an
+     * animated GIF, any other name as PNG files named after it followed by the frame number
+     * @param file the animation
+     * @param width the width of the grid
+     * @param height the height of the grid
+     * @param scale the size of a cell in pixels
+     * @param delay the time between two frames in milliseconds, GIF only
+     * @throws IOException if the file cannot be written
+     */
+    public AnimationExporter(Path file, int width, int height, int scale, int delay) throws IOException {
+        this.width = width;
+        this.height = height;
+        this.scale = Math.max(scale, 1);
+        image = new BufferedImage(width * this.scale, height * this.scale, BufferedImage.TYPE_BYTE_INDEXED,
+                GridPanel.PALETTE);
+        pixels = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+        states = (this.scale == 1) ? pixels : new byte[width * height];
+
+        String name = file.toString();
+        if (name.toLowerCase().endsWith(".gif")) {
+            Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("gif");
+            if (!writers.hasNext()) {
+                throw new IOException("No GIF writer available");
+            }
+            gif = writers.next();
+            // A file image stream does not cut an existing longer file, start from an empty one
+            Files.deleteIfExists(file);
+            out = new FileImageOutputStream(file.toFile());
+            gif.setOutput(out);
+            gif.prepareWriteSequence(null);
+            firstFrame = frameMetadata(delay, true);
+            nextFrames = frameMetadata(delay, false);
+            prefix = null;
+        } else {
+            gif = null;
+            out = null;
+            firstFrame = null;
+            nextFrames = null;
+            prefix = name.toLowerCase().endsWith(".png") ? name.substring(0, name.length() - 4) : name;
+        }
+    }
+
+    // Builds the metadata of a GIF frame, the first one also makes the animation loop forever
+    private IIOMetadata frameMetadata(int delay, boolean first) throws IOException {
+        IIOMetadata metadata = gif.getDefaultImageMetadata(ImageTypeSpecifier.createFromRenderedImage(image),
+                gif.getDefaultWriteParam());
+        IIOMetadataNode root = (IIOMetadataNode) metadata.getAsTree(GIF_FORMAT);
+
+        IIOMetadataNode control = new IIOMetadataNode("GraphicControlExtension");
+        control.setAttribute("disposalMethod", "none");
+        control.setAttribute("userInputFlag", "FALSE");
+        control.setAttribute("transparentColorFlag", "FALSE");
+        // GIF delays are in hundredths of a second
+        control.setAttribute("delayTime", String.valueOf(Math.max(delay / 10, 1)));
+        control.setAttribute("transparentColorIndex", "0");
+        root.appendChild(control);
+
+        if (first) {
+            IIOMetadataNode applications = new IIOMetadataNode("ApplicationExtensions");
+            IIOMetadataNode loop = new IIOMetadataNode("ApplicationExtension");
+            loop.setAttribute("applicationID", "NETSCAPE");
+            loop.setAttribute("authenticationCode", "2.0");
+            // Sub-block 1 holds the number of repetitions, 0 for forever
+            loop.setUserObject(new byte[] {1, 0, 0});
+            applications.appendChild(loop);
+            root.appendChild(applications);
+        }
+        metadata.setFromTree(GIF_FORMAT, root);
+        return metadata;
+    }
+
+    /**
+     * Draws the current generation of an engine and writes it as the next frame
+     * @param brain the engine, with the size given to the constructor
+     * @throws IOException if the frame cannot be written
+     */
+    public void writeFrame(SimulationEngine brain) throws IOException {
+        brain.copyStates(states);
+        if (scale > 1) {
+            // Draw the first pixel row of every cell row and copy it for the others
+            int columns = width * scale;
+            for (int i = 0; i < height; i++) {
+                int row = i * scale * columns;
+                for (int j = 0; j < width; j++) {
+                    byte state = states[i * width + j];
+                    for (int k = 0; k < scale; k++) {
+                        pixels[row + j * scale + k] = state;
+                    }
+                }
+                for (int k = 1; k < scale; k++) {
+                    System.arraycopy(pixels, row, pixels, row + k * columns, columns);
+                }
+            }
+        }
+
+        if (gif != null) {
+            gif.writeToSequence(new IIOImage(image, null, frames == 0 ? firstFrame : nextFrames), null);
+        } else {
+            Path file = Paths.get(String.format("%s_%06d.png", prefix, frames));
+            if (!ImageIO.write(image, "png", file.toFile())) {
+                throw new IOException("No PNG writer available");
+            }
+        }
+        frames++;
+    }
+
+    /**
+     * Returns the number of frames written so far
+     * @return the number of frames
+     */
+    public int getFrameCount() {
+        return frames;
+    }
+
+    /**
+     * Ends the animation and closes its file
+     * @throws IOException if the file cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        if (gif != null) {
+            // The trailer ends the GIF, the file is closed and the writer released even if it fails
+            try {
+                gif.endWriteSequence();
+            } finally {
+                try {
+                    out.close();
+                } finally {
+                    gif.dispose();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,422 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package automatastarter;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Random;
+
+/**
+ * Command line entry point that runs a simulation without any user interface.
+ * The engine is stepped as fast as it can go and the generation rate and
+ * final counts are printed when it is done, for example:
+ *   java -cp GGA_Template.jar automatastarter.BatchRunner --width 512 --height 512 --generations 10000
+ * Long runs can save a snapshot every few generations and be resumed from it later with --load,
+ * or be recorded with --record and any of their generations replayed later with --replay and --at.
+ * --animate draws every generation to an animated GIF or to numbered PNG files
+ * @author paul
+ */
+public class BatchRunner {
+    // Initialise variables
+    private EngineType engine = EngineType.REFERENCE;
+    private int width = 100;
+    private int height = 100;
+    private int birthNumber = 2;
+    // True when --birth was given, a pattern with another rule is then rejected instead of followed
+    private boolean birthGiven;
+    private boolean wrapping = true;
+    private String pattern = "random";
+    private long seed = 1;
+    private int generations = 1000;
+    private String countsFile;
+    private String onCycle = "run";
+    private String loadFile;
+    private String saveFile;
+    private String exportFile;
+    private String recordFile;
+    private int keyframeInterval = GenerationRecorder.DEFAULT_KEYFRAME_INTERVAL;
+    private String replayFile;
+    private int replayStep;
+    private GenerationRecorder recorder;
+    private String animationFile;
+    private int scale = 1;
+    private int delay = 100;
+    private AnimationExporter animation;
+    private int checkpoint;
+    private SnapshotFile.Compression compression = SnapshotFile.Compression.RLE;
+    private CycleDetector detector;
+    // Generations jumped over instead of being stepped
+    private int skipped;
+    // Time spent stepping the engine, without writing files
+    private long steppingNanos;
+
+    /**
+     * Parses the options, runs the simulation and prints a summary
+     * @param args the command line options, see usage
+     */
+    public static void main(String[] args) {
+        // Nothing here needs a display, make sure AWT never tries to open one
+        System.setProperty("java.awt.headless", "true");
+        BatchRunner runner = new BatchRunner();
+        try {
+            runner.parse(args);
+            runner.run();
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            usage();
+            System.exit(2);
+        } catch (IOException e) {
+            System.err.println("I/O error: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    // Prints the available options
+    private static void usage() {
+        System.err.println("Usage: BatchRunner [options]");
+        System.err.println("  --engine NAME       simulation engine, default Reference");
+        System.err.println("  --width N           grid width, default 100");
+        System.err.println("  --height N          grid height, default 100");
+        System.err.println("  --birth N           birth number, default 2 or the rule of the pattern");
+        System.err.println("  --wrap true|false   wrap the grid, default true");
+        System.err.println("  --pattern NAME      random, a pattern of the library or an RLE file");
+        System.err.println("  --seed N            seed of the random pattern, default 1");
+        System.err.println("  --generations N     number of generations, default 1000");
+        System.err.println("  --counts FILE       write the counts of every generation as CSV");
+        System.err.println("  --on-cycle MODE     when the grid dies out or repeats: run on, stop, or skip");
+        System.err.println("                      the remaining whole periods, default run");
+        System.err.println("  --load FILE         start from a saved snapshot instead of a pattern,");
+        System.err.println("                      the grid size and birth number come from the file");
+        System.err.println("  --save FILE         save a snapshot of the last generation");
+        System.err.println("  --checkpoint N      also save the snapshot every N generations");
+        System.err.println("  --compression MODE  none, rle or deflate, default rle");
+        System.err.println("  --export FILE       write the last generation as an RLE pattern");
+        System.err.println("  --record FILE       record every generation, with an index in FILE.idx");
+        System.err.println("  --keyframe N        generations between two full keyframes, default 1000");
+        System.err.println("  --replay FILE       start from a generation of a recording instead of a pattern");
+        System.err.println("  --at N              the step of the replayed generation, default the first");
+        System.err.println("  --animate FILE      write every generation to an animated GIF, or to numbered PNG files");
+        System.err.println("  --scale N           size of a cell in the animation in pixels, default 1");
+        System.err.println("  --delay MS          time between two frames of the GIF, default 100");
+        StringBuilder names = new StringBuilder("Engines:");
+        for (EngineType type : EngineType.values()) {
+            names.append(' ').append(type);
+        }
+        System.err.println(names);
+        names = new StringBuilder("Patterns:");
+        for (String name : new PatternLibrary().getNames()) {
+            names.append(' ').append(name);
+        }
+        System.err.println(names);
+    }
+
+    // Reads the options into the fields
+    private void parse(String[] args) {
+        for (int k = 0; k < args.length; k++) {
+            if (k + 1 >= args.length) {
+                throw new IllegalArgumentException("Missing value for " + args[k]);
+            }
+            String value = args[++k];
+            try {
+                switch (args[k - 1]) {
+                    case "--engine": engine = EngineType.parse(value); break;
+                    case "--width": width = Integer.parseInt(value); break;
+                    case "--height": height = Integer.parseInt(value); break;
+                    case "--birth": birthNumber = Integer.parseInt(value); birthGiven = true; break;
+                    case "--wrap": wrapping = Boolean.parseBoolean(value); break;
+                    case "--pattern": pattern = value; break;
+                    case "--seed": seed = Long.parseLong(value); break;
+                    case "--generations": generations = Integer.parseInt(value); break;
+                    case "--counts": countsFile = value; break;
+                    case "--on-cycle": onCycle = value.toLowerCase(); break;
+                    case "--load": loadFile = value; break;
+                    case "--save": saveFile = value; break;
+                    case "--checkpoint": checkpoint = Integer.parseInt(value); break;
+                    case "--compression": compression = parseCompression(value); break;
+                    case "--export": exportFile = value; break;
+                    case "--record": recordFile = value; break;
+                    case "--keyframe": keyframeInterval = Integer.parseInt(value); break;
+                    case "--replay": replayFile = value; break;
+                    case "--at": replayStep = Integer.parseInt(value); break;
+                    case "--animate": animationFile = value; break;
+                    case "--scale": scale = Integer.parseInt(value); break;
+                    case "--delay": delay = Integer.parseInt(value); break;
+                    default: throw new IllegalArgumentException("Unknown option " + args[k - 1]);
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Not a number: " + value);
+            }
+        }
+        if (width < 1 || height < 1 || birthNumber < 0 || birthNumber > 8 || generations < 0) {
+            throw new IllegalArgumentException("Invalid grid size, birth number or generation count");
+        }
+        if (!onCycle.equals("run") && !onCycle.equals("stop") && !onCycle.equals("skip")) {
+            throw new IllegalArgumentException("Unknown cycle mode " + onCycle);
+        }
+        if (checkpoint < 0 || (checkpoint > 0 && saveFile == null)) {
+            throw new IllegalArgumentException("--checkpoint needs a positive interval and --save");
+        }
+        if (keyframeInterval < 1) {
+            throw new IllegalArgumentException("--keyframe needs a positive interval");
+        }
+        if ((recordFile != null || animationFile != null) && onCycle.equals("skip")) {
+            throw new IllegalArgumentException("--record and --animate cannot write the generations skipped by --on-cycle skip");
+        }
+        if (scale < 1 || delay < 0) {
+            throw new IllegalArgumentException("--scale must be positive and --delay not negative");
+        }
+    }
+
+    // Returns the compression with the given name
+    private static SnapshotFile.Compression parseCompression(String name) {
+        for (SnapshotFile.Compression compression : SnapshotFile.Compression.values()) {
+            if (compression.name().equalsIgnoreCase(name)) {
+                return compression;
+            }
+        }
+        throw new IllegalArgumentException("Unknown compression " + name);
+    }
+
+    // Creates the engine, steps it and prints the results
+    private void run() throws IOException {
+        SimulationEngine brain;
+        if (loadFile != null) {
+            brain = SnapshotFile.load(Paths.get(loadFile), engine);
+            width = brain.getWidth();
+            height = brain.getHeight();
+            birthNumber = brain.getBirthNumber();
+            wrapping = brain.isWrapping();
+        } else if (replayFile != null) {
+            try (GenerationReplay replay = new GenerationReplay(Paths.get(replayFile))) {
+                replay.seek(Math.max(replayStep, 0));
+                brain = replay.toEngine(engine);
+            }
+            width = brain.getWidth();
+            height = brain.getHeight();
+            birthNumber = brain.getBirthNumber();
+            wrapping = brain.isWrapping();
+            System.out.println("Replayed: step " + brain.getStepCount() + " of " + replayFile);
+        } else {
+            brain = engine.create(width, height, birthNumber, wrapping);
+            if (pattern.equalsIgnoreCase("random")) {
+                fillRandom(brain);
+            } else {
+                brain = loadPattern(brain);
+                birthNumber = brain.getBirthNumber();
+            }
+        }
+
+        int first = brain.getStepCount();
+        if (recordFile != null) {
+            recorder = new GenerationRecorder(Paths.get(recordFile), brain, keyframeInterval);
+        }
+        try {
+            if (animationFile != null) {
+                animation = new AnimationExporter(Paths.get(animationFile), width, height, scale, delay);
+                animation.writeFrame(brain);
+            }
+            if (countsFile == null && onCycle.equals("run") && checkpoint == 0 && recorder == null
+                    && animation == null) {
+                long start = System.nanoTime();
+                brain.stepN(generations);
+                steppingNanos += System.nanoTime() - start;
+            } else if (countsFile == null) {
+                step(brain, null);
+            } else {
+                try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(Paths.get(countsFile)))) {
+                    out.println("step,on,dying,off");
+                    step(brain, out);
+                    if (out.checkError()) {
+                        throw new IOException(countsFile);
+                    }
+                }
+            }
+        } finally {
+            try {
+                if (animation != null) {
+                    animation.close();
+                }
+            } finally {
+                if (recorder != null) {
+                    recorder.close();
+                }
+            }
+        }
+        if (saveFile != null) {
+            SnapshotFile.save(brain, Paths.get(saveFile), compression);
+        }
+        if (exportFile != null) {
+            try (Writer out = Files.newBufferedWriter(Paths.get(exportFile))) {
+                RleFormat.save(brain, out, null);
+            }
+        }
+        double seconds = steppingNanos / 1e9;
+
+        System.out.println("Engine: " + engine + ", " + width + "x" + height + ", birth number " + birthNumber
+                + (wrapping ? ", wrapping" : ""));
+        int stepped = brain.getStepCount() - first - skipped;
+        System.out.println("Generations: " + stepped + " in " + String.format("%.3f", seconds) + " s ("
+                + String.format("%.1f", stepped / Math.max(seconds, 1e-9)) + " generations/sec)");
+        if (detector != null) {
+            System.out.println("Cycle: " + detector.describe());
+            if (skipped > 0) {
+                System.out.println("Skipped: " + skipped + " generations, final step " + brain.getStepCount());
+            }
+        }
+        if (animation != null) {
+            System.out.println("Animated: " + animation.getFrameCount() + " frames to " + animationFile);
+        }
+        if (recorder != null) {
+            System.out.println("Recorded: " + recorder.getBytesWritten() + " bytes to " + recordFile);
+        }
+        System.out.println("On: " + brain.getOnCount() + ", Dying: " + brain.getDyingCount() + ", Off: " + brain.getOffCount());
+    }
+
+    /* Steps the engine, watching for cycles unless they are ignored, writes the counts if out is not null
+        and records and draws every generation if asked to, and saves a snapshot at every checkpoint
+    */
+    private void step(SimulationEngine brain, PrintWriter out) throws IOException {
+        if (!onCycle.equals("run")) {
+            detector = new CycleDetector();
+            detector.observe(brain);
+        }
+        boolean watching = detector != null;
+        writeCounts(out, brain);
+        for (int k = 0; k < generations; k++) {
+            update(brain);
+            writeCounts(out, brain);
+            if (recorder != null) {
+                recorder.record(brain);
+            }
+            if (animation != null) {
+                animation.writeFrame(brain);
+            }
+            if (checkpoint > 0 && (k + 1) % checkpoint == 0) {
+                SnapshotFile.save(brain, Paths.get(saveFile), compression);
+            }
+            if (watching) {
+                // Act only when a cycle is first found, the detector keeps checking the grid stays in it
+                CycleDetector.Status before = detector.getStatus();
+                if (detector.observe(brain) != CycleDetector.Status.RUNNING && before == CycleDetector.Status.RUNNING) {
+                    if (onCycle.equals("stop")) {
+                        return;
+                    }
+                    int jumped = skip(brain, out, generations - k - 1);
+                    k += jumped;
+                    // Less than a period is left after a jump, keep the cycle that was jumped for the report
+                    watching = jumped == 0;
+                }
+            }
+        }
+    }
+
+    /* Jumps over the whole periods that fit in the remaining generations and returns how many generations
+        were jumped. A cycle in place is jumped by doing nothing, a moving pattern on a wrapping grid by moving
+        its cells, a moving pattern on a bounded grid will hit the border and cannot be jumped
+    */
+    private int skip(SimulationEngine brain, PrintWriter out, int remaining) {
+        int period = detector.getPeriod();
+        int dx = detector.getDx();
+        int dy = detector.getDy();
+        if ((dx != 0 || dy != 0) && !brain.isWrapping()) {
+            return 0;
+        }
+        int periods = remaining / period;
+        if (periods == 0) {
+            return 0;
+        }
+        if (out != null) {
+            // Replay the counts of one period for every skipped one
+            int[][] counts = new int[period][];
+            for (int k = 0; k < period; k++) {
+                update(brain);
+                counts[k] = new int[] {brain.getOnCount(), brain.getDyingCount(), brain.getOffCount()};
+                writeCounts(out, brain);
+            }
+            periods--;
+            int step = brain.getStepCount();
+            for (int k = 0; k < periods * period; k++) {
+                int[] row = counts[k % period];
+                out.println((step + k + 1) + "," + row[0] + "," + row[1] + "," + row[2]);
+            }
+        }
+        if (dx != 0 || dy != 0) {
+            shift(brain, dx * periods, dy * periods);
+        }
+        // The jumped generations still count, so snapshots and counts carry the right step
+        brain.setStepCount(brain.getStepCount() + periods * period);
+        skipped += periods * period;
+        return remaining / period * period;
+    }
+
+    // Moves every cell of a wrapping grid
+    private static void shift(SimulationEngine brain, int dx, int dy) {
+        int width = brain.getWidth();
+        int height = brain.getHeight();
+        byte[] states = new byte[width * height];
+        brain.copyStates(states);
+        for (int i = 0; i < height; i++) {
+            for (int j = 0; j < width; j++) {
+                brain.setState(Math.floorMod(i + dy, height), Math.floorMod(j + dx, width), states[i * width + j]);
+            }
+        }
+    }
+
+    /* Places a pattern of the library, or read from an RLE file, at the center of the grid and returns the
+        engine holding it, a new one following the rule of the pattern unless the birth number was given
+    */
+    private SimulationEngine loadPattern(SimulationEngine brain) throws IOException {
+        PatternLibrary library = new PatternLibrary();
+        int index = library.indexOf(pattern);
+        if (index >= 0) {
+            if (birthGiven) {
+                library.load(index, brain);
+                return brain;
+            }
+            return library.loadWithRule(index, brain);
+        } else if (Files.isRegularFile(Paths.get(pattern))) {
+            try (Reader in = Files.newBufferedReader(Paths.get(pattern))) {
+                if (birthGiven) {
+                    RleFormat.load(in, brain);
+                    return brain;
+                }
+                return RleFormat.loadWithRule(in, brain);
+            }
+        } else {
+            throw new IllegalArgumentException("Unknown pattern " + pattern);
+        }
+    }
+
+    // Fills the grid with a reproducible random pattern of ON cells
+    private void fillRandom(SimulationEngine brain) {
+        Random random = new Random(seed);
+        for (int i = 0; i < height; i++) {
+            for (int j = 0; j < width; j++) {
+                if (random.nextBoolean()) {
+                    brain.setState(i, j, Brain.ON);
+                }
+            }
+        }
+    }
+
+    // Writes one CSV line with the counts of the current generation if out is not null
+    private static void writeCounts(PrintWriter out, SimulationEngine brain) {
+        if (out != null) {
+            out.println(brain.getStepCount() + "," + brain.getOnCount() + "," + brain.getDyingCount()
+                    + "," + brain.getOffCount());
+        }
+    }
+
+    // Advances the engine by one step, timing only the step itself
+    private void update(SimulationEngine brain) {
+        long start = System.nanoTime();
+        brain.update();
+        steppingNanos += System.nanoTime() - start;
+    }
+}
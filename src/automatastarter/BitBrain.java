@@ -0,0 +1,349 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package automatastarter;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Bit-packed data model for Brian's Brain simulation.
+ * The ON and DYING states are kept in two bitplanes of 64 cells per long,
+ * and every step counts the neighbors of 64 cells at once with bitwise adders
+ * @author paul
+ */
+public class BitBrain implements SimulationEngine {
+    // Number of cells stored in each word
+    static final int WORD_BITS = 64;
+
+    // Initialise variables
+    private int height;
+    private int width;
+    private int birthNumber;
+    private boolean wrapping;
+    private int wordsPerRow;
+    // Mask of the valid cells in the last word of every row
+    private long lastWordMask;
+    // Bitplanes for the current generation and the one being computed
+    private long[] on;
+    private long[] dying;
+    private long[] nextOn;
+    private long[] nextDying;
+    private int onCount;
+    private int offCount;
+    private int dyingCount;
+    private int stepCount;
+
+    /**
+     * Constructor, creates a bit-packed brain simulation given the parameter values
+     * @param width the width of the grid
+     * @param height the height of the grid
+     * @param birthNumber the number of neighboring cells that must be on in
+     *                    order an off cell on
+     * @param wrapping if true the grid wraps both horizontally and vertically
+     */
+    public BitBrain(int width, int height, int birthNumber, boolean wrapping){
+        this.width = width;
+        this.height = height;
+        this.birthNumber = birthNumber;
+        this.wrapping = wrapping;
+        wordsPerRow = (width + WORD_BITS - 1) / WORD_BITS;
+        int tail = width % WORD_BITS;
+        lastWordMask = (tail == 0) ? -1L : (1L << tail) - 1;
+        on = new long[wordsPerRow * height];
+        dying = new long[wordsPerRow * height];
+        nextOn = new long[wordsPerRow * height];
+        nextDying = new long[wordsPerRow * height];
+        clear();
+    }
+
+    /**
+     * Initialize the simulation with a random pattern
+     */
+    public void randomize() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        // Reset all counters to zero
+        onCount = 0;
+        dyingCount = 0;
+        stepCount = 0;
+        for (int i = 0; i < on.length; i++) {
+            // Every bit of a random word is on with probability one half
+            on[i] = random.nextLong() & wordMask(i % wordsPerRow);
+            dying[i] = 0;
+            onCount += Long.bitCount(on[i]);
+        }
+        offCount = width * height - onCount;
+    }
+
+    /**
+     * Advance the simulation by one step
+     */
+    public void update() {
+        // Reset cell counters to zero
+        onCount = 0;
+        dyingCount = 0;
+        for (int i = 0; i < height; i++) {
+            // Find the rows above and below, -1 stands for an all OFF row
+            int up = i - 1;
+            int down = i + 1;
+            if (wrapping){
+                up = (up + height) % height;
+                down = down % height;
+            } else if (down >= height) {
+                down = -1;
+            }
+            int row = i * wordsPerRow;
+            for (int w = 0; w < wordsPerRow; w++) {
+                long n = wordAt(up, w);
+                long s = wordAt(down, w);
+                long c = on[row + w];
+                // Birth mask: OFF cells with exactly birthNumber ON neighbors
+                long born = countEquals(west(up, w), n, east(up, w),
+                                        west(i, w), east(i, w),
+                                        west(down, w), s, east(down, w), birthNumber);
+                born &= ~c & ~dying[row + w] & wordMask(w);
+                // ON cells start dying and DYING cells turn off
+                nextOn[row + w] = born;
+                nextDying[row + w] = c;
+                onCount += Long.bitCount(born);
+                dyingCount += Long.bitCount(c);
+            }
+        }
+        offCount = width * height - onCount - dyingCount;
+
+        // Swap the buffers so the new generation becomes current
+        long[] temp = on;
+        on = nextOn;
+        nextOn = temp;
+        temp = dying;
+        dying = nextDying;
+        nextDying = temp;
+        stepCount++;
+    }
+
+    // Returns word w of the ON plane for the given row, rows outside the grid are OFF
+    private long wordAt(int row, int w) {
+        return (row < 0) ? 0 : on[row * wordsPerRow + w];
+    }
+
+    // Returns the ON plane shifted so each bit holds the state of its left neighbor
+    private long west(int row, int w) {
+        if (row < 0) {
+            return 0;
+        }
+        int base = row * wordsPerRow;
+        long carry;
+        if (w > 0) {
+            carry = on[base + w - 1] >>> (WORD_BITS - 1);
+        } else if (wrapping) {
+            // The left neighbor of the first column is the last column
+            carry = (on[base + wordsPerRow - 1] >>> ((width - 1) % WORD_BITS)) & 1;
+        } else {
+            carry = 0;
+        }
+        return (on[base + w] << 1) | carry;
+    }
+
+    // Returns the ON plane shifted so each bit holds the state of its right neighbor
+    private long east(int row, int w) {
+        if (row < 0) {
+            return 0;
+        }
+        int base = row * wordsPerRow;
+        long shifted = on[base + w] >>> 1;
+        if (w < wordsPerRow - 1) {
+            shifted |= on[base + w + 1] << (WORD_BITS - 1);
+        } else if (wrapping) {
+            // The right neighbor of the last column is the first column
+            shifted |= (on[base] & 1) << ((width - 1) % WORD_BITS);
+        }
+        return shifted;
+    }
+
+    // Returns the mask of valid cells in word w of a row
+    private long wordMask(int w) {
+        return (w == wordsPerRow - 1) ? lastWordMask : -1L;
+    }
+
+    /**
+     * Adds the eight neighbor bitplanes a to h with a tree of full adders and
+     * returns the bits whose neighbor count is exactly n
+     * @param n the neighbor count to match
+     * @return a mask with the bits whose count equals n
+     */
+    static long countEquals(long a, long b, long c, long d, long e, long f, long g, long h, int n) {
+        if (n < 0 || n > 8) {
+            return 0;
+        }
+        // First layer: three adders produce partial sums of weight one and two
+        long s1 = a ^ b ^ c;
+        long c1 = (a & b) | (c & (a ^ b));
+        long s2 = d ^ e ^ f;
+        long c2 = (d & e) | (f & (d ^ e));
+        long s3 = g ^ h;
+        long c3 = g & h;
+        // Second layer: the ones bit and a carry of weight two
+        long ones = s1 ^ s2 ^ s3;
+        long t = (s1 & s2) | (s3 & (s1 ^ s2));
+        // Third layer: add the four carries of weight two
+        long u = c1 ^ c2 ^ c3;
+        long v = (c1 & c2) | (c3 & (c1 ^ c2));
+        long twos = u ^ t;
+        long w = u & t;
+        long fours = v ^ w;
+        long eights = v & w;
+        // Compare each bit of the count with the bits of n
+        return ((n & 1) != 0 ? ones : ~ones)
+             & ((n & 2) != 0 ? twos : ~twos)
+             & ((n & 4) != 0 ? fours : ~fours)
+             & ((n & 8) != 0 ? eights : ~eights);
+    }
+
+    /**
+     * Reset all cells to off state
+     */
+    public void clear(){
+        // Reset all counters
+        onCount = 0;
+        dyingCount = 0;
+        stepCount = 0;
+        offCount = width * height;
+        Arrays.fill(on, 0);
+        Arrays.fill(dying, 0);
+    }
+
+    /**
+     * Copies the state of every cell into an array in row order, visiting only the live bits
+     * @param states receives width * height states
+     */
+    public void copyStates(byte[] states){
+        Arrays.fill(states, 0, width * height, (byte) Brain.OFF);
+        for (int i = 0; i < height; i++) {
+            for (int w = 0; w < wordsPerRow; w++) {
+                int index = i * wordsPerRow + w;
+                int base = i * width + w * WORD_BITS;
+                long live = on[index] | dying[index];
+                while (live != 0) {
+                    int bit = Long.numberOfTrailingZeros(live);
+                    states[base + bit] = (byte) ((on[index] >>> bit & 1) != 0 ? Brain.ON : Brain.DYING);
+                    live &= live - 1;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the state of a given cell
+     * @param i the cell row
+     * @param j the cell column
+     * @return Brain.OFF, Brain.ON or Brain.DYING
+     */
+    public int getState(int i, int j){
+        int index = i * wordsPerRow + j / WORD_BITS;
+        long bit = 1L << (j % WORD_BITS);
+        if ((on[index] & bit) != 0) {
+            return Brain.ON;
+        } else if ((dying[index] & bit) != 0) {
+            return Brain.DYING;
+        }
+        return Brain.OFF;
+    }
+
+    /**
+     * Sets the state of a given cell and keeps the counters in sync
+     * @param i the cell row
+     * @param j the cell column
+     * @param state Brain.OFF, Brain.ON or Brain.DYING
+     */
+    public void setState(int i, int j, int state){
+        int index = i * wordsPerRow + j / WORD_BITS;
+        long bit = 1L << (j % WORD_BITS);
+        // Remove the old state from the counters
+        switch (getState(i, j)) {
+            case Brain.ON: onCount--; break;
+            case Brain.DYING: dyingCount--; break;
+            default: offCount--;
+        }
+        on[index] &= ~bit;
+        dying[index] &= ~bit;
+        // Add the new state
+        switch (state) {
+            case Brain.ON: on[index] |= bit; onCount++; break;
+            case Brain.DYING: dying[index] |= bit; dyingCount++; break;
+            default: offCount++;
+        }
+    }
+
+    /**
+     * Returns the number of ON neighbors that turns an OFF cell on
+     * @return the birth number
+     */
+    public int getBirthNumber(){
+        return birthNumber;
+    }
+
+    /**
+     * Returns whether the grid wraps around both horizontally and vertically
+     * @return true if the grid wraps
+     */
+    public boolean isWrapping(){
+        return wrapping;
+    }
+
+    /**
+     * Returns the width of the grid
+     * @return the width of the grid
+     */
+    public int getWidth(){
+        return width;
+    }
+
+    /**
+     * Returns the height of the grid
+     * @return the height of the grid
+     */
+    public int getHeight(){
+        return height;
+    }
+
+    /**
+     * Returns the number of cells with off status
+     * @return the number of off cells
+     */
+    public int getOffCount(){
+        return offCount;
+    }
+
+    /**
+     * Returns the number of cells with on status
+     * @return the number of on cells
+     */
+    public int getOnCount(){
+        return onCount;
+    }
+
+    /**
+     * Returns the number of cells with dying status
+     * @return the number of dying cells
+     */
+    public int getDyingCount(){
+        return dyingCount;
+    }
+
+    /**
+     * Returns the current simulation step
+     * @return the simulation step
+     */
+    public int getStepCount(){
+        return stepCount;
+    }
+
+    /**
+     * Sets the simulation step, for a grid restored from a file
+     * @param stepCount the simulation step
+     */
+    public void setStepCount(int stepCount){
+        this.stepCount = stepCount;
+    }
+}
@@ -4,6 +4,9 @@
  */
 package automatastarter;
 
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
 /**
  * The data model for Brian's Brain simulation
  * @author paul
@@ -13,40 +16,26 @@ package automatastarter;
  */
 
 
-public class Brain {
+public class Brain implements SimulationEngine {
     // Names for the possible cell states
     public static final int OFF = 0;
     public static final int ON = 1;
     public static final int DYING = 2;
     public static final int NEW = 3;
     
-    // Define the possible states for a cell; N is used for cells that will become ON at the end of the iteration
+    // Define the possible states for a cell; N is no longer used by update and kept for compatibility
     public static final char[] STATES = {' ', 'o', '*', 'N'};
     
     // Define coordinate changes for all eight Moore neighbors
     private static final int[][] DIRECTIONS = {{-1, -1}, {-1, 0}, {-1, 1}, {0, -1}, {0, 1}, {1, -1}, {1, 0}, {1, 1}};
     
-    // Define Patterns
-    private static final char[][] OSCILLATOR = {{' ', '*', ' ', ' '},
-                                                {' ', 'o', 'o', '*'},
-                                                {'*', 'o', 'o', ' '}, 
-                                                {' ', ' ', '*', ' '}};
-    
-    private static final char[][] LINEAR = {{' ', ' ', 'o', '*', ' ', ' ', ' ', ' ', ' ', ' '},
-                                            {'o', '*', ' ', 'o', '*', ' ', 'o', '*', ' ', ' '},
-                                            {'o', '*', ' ', ' ', 'o', '*', ' ', ' ', 'o', '*'}};
-    
-    private static final char[][] DIAGONAL = {{'*', ' ', ' '},
-                                              {'o', ' ', 'o'},
-                                              {' ', '*', '*'},
-                                              {' ', ' ', 'o'}};
-    
-    private static final char[][] EXPANDING = {{'o', 'o', ' ', ' ', ' ', ' '},
-                                               {' ', '*', 'o', ' ', ' ', ' '},
-                                               {' ', ' ', '*', 'o', ' ', ' '},
-                                               {' ', ' ', ' ', '*', 'o', ' '},
-                                               {' ', ' ', ' ', ' ', '*', 'o'},
-                                               {' ', ' ', ' ', ' ', ' ', 'o'}};
+    // Number of rows stepped by a single task in parallel mode
+    private static final int BAND_ROWS = 32;
+    // Positions after the OFF, ON and DYING counts in the results of a band
+    private static final int ZOBRIST = 3;
+    private static final int SHAPE = 4;
+    private static final int LEFT = 5;
+    private static final int TOP = 6;
     
     // Initialise variables
     private int height;
@@ -54,10 +43,26 @@ public class Brain {
     private int birthNumber;
     private boolean wrapping;
     public char[][] cells;
+    // Back buffer that receives the next generation during update
+    private char[][] next;
     private int onCount;
     private int offCount;
     private int dyingCount;
     private int stepCount;
+    private boolean parallel;
+    // Tiles that changed since the renderer last collected them
+    private DirtyTiles changes;
+    /* Zobrist hash of the current generation, kept up to date as cells change once hashState
+        was called, until then the hashes are not computed and hashes is null
+    */
+    private long zobrist;
+    // Shape hash sum and the top left corner of the live cells, computed during update
+    private StateHash hashes;
+    private long shapeSum;
+    private int shapeLeft;
+    private int shapeTop;
+    // True when cells were edited since the shape was last computed
+    private boolean shapeStale;
     
     /**
      * Constructor, creates a brain simulation given the parameter values
@@ -73,6 +78,8 @@ public class Brain {
         this.birthNumber = birthNumber;
         this.wrapping = wrapping;
         cells = new char[height][width];
+        next = new char[height][width];
+        changes = new DirtyTiles(width, height);
         onCount = 0;
         offCount = 0;
         dyingCount = 0;
@@ -89,6 +96,7 @@ public class Brain {
         offCount = 0;
         dyingCount = 0;
         stepCount = 0;
+        changes.markAll();
         // Iterates through the grid
         for (int i = 0; i < cells.length; i++) {
             for (int j = 0; j < cells[i].length; j++) {
@@ -102,53 +110,161 @@ public class Brain {
                 }
             }
         }
+        if (hashes != null) {
+            rehash();
+        }
     }
     
     /**
      * Advance the simulation by one step
      */
     public void update() {
-        /* It is not possible to update all cells in one pass through the grid so
-            we have to do it in multiple steps
-            First step, mark all the cells that should be turned ON with NEW  - 
-            this way they do not yet count as ON neighbors
+        /* Each generation is read only from cells and written into the back
+            buffer, so freshly born cells never count as ON neighbors and the
+            grid is updated in a single pass
         */
-        // Reset cell counters to zero
-        onCount = 0;
-        offCount = 0;
-        dyingCount = 0;
-        for (int i = 0; i < cells.length; i++) {
+        long[] counts;
+        if (parallel) {
+            // Split the grid into row bands that are stepped on all cores
+            counts = ForkJoinPool.commonPool().invoke(new BandTask(0, height));
+        } else {
+            counts = stepRows(0, height);
+        }
+        onCount = (int) counts[ON];
+        offCount = (int) counts[OFF];
+        dyingCount = (int) counts[DYING];
+        if (hashes != null) {
+            zobrist ^= counts[ZOBRIST];
+            setShape(counts[SHAPE], (int) counts[LEFT], (int) counts[TOP]);
+        }
+        
+        // Swap the buffers so the new generation becomes current
+        char[][] temp = cells;
+        cells = next;
+        next = temp;
+        stepCount++;
+    }
+    
+    /* Computes the next generation of rows from (inclusive) to to (exclusive) and returns their OFF, ON and DYING counts,
+        the change of the Zobrist hash and the shape hash sum and top left corner of their live cells
+    */
+    private long[] stepRows(int from, int to) {
+        // Counters are local to the band so bands can run at the same time
+        long[] counts = {0, 0, 0, 0, 0, Integer.MAX_VALUE, Integer.MAX_VALUE};
+        boolean hashing = hashes != null;
+        for (int i = from; i < to; i++) {
             for (int j = 0; j < cells[i].length; j++) {
-                if (cells[i][j] == ' '){
-                    if (countNeighbors(i, j) == birthNumber){
+                switch (cells[i][j]) {
+                    case 'o':
+                        // ON cells always start dying
+                        next[i][j] = STATES[DYING];
+                        counts[DYING]++;
+                        changes.mark(i, j);
+                        if (hashing) {
+                            int index = i * width + j;
+                            counts[ZOBRIST] ^= StateHash.zobrist(index, ON) ^ StateHash.zobrist(index, DYING);
+                            addShape(counts, i, j, DYING);
+                        }
+                        break;
+                    case '*':
+                        // DYING cells always turn off
+                        next[i][j] = STATES[OFF];
+                        counts[OFF]++;
+                        changes.mark(i, j);
+                        if (hashing) {
+                            counts[ZOBRIST] ^= StateHash.zobrist(i * width + j, DYING);
+                        }
+                        break;
+                    default:
                         /* If the cell is OFF and the number of ON neighbors is equal to 
-                        the birth number we mark it to be turned ON
+                        the birth number it is turned ON
                         */
-                        cells[i][j] = STATES[NEW];
-                    }
+                        if (countNeighbors(i, j) == birthNumber){
+                            next[i][j] = STATES[ON];
+                            counts[ON]++;
+                            changes.mark(i, j);
+                            if (hashing) {
+                                counts[ZOBRIST] ^= StateHash.zobrist(i * width + j, ON);
+                                addShape(counts, i, j, ON);
+                            }
+                        } else {
+                            next[i][j] = STATES[OFF];
+                            counts[OFF]++;
+                        }
                 }
             }
         }
-        
-        // Update the state of all Cells
-        for (int i = 0; i < cells.length; i++) {
-            for (int j = 0; j < cells[i].length; j++) {
-                if (cells[i][j] == STATES[ON]){
-                    cells[i][j] = STATES[DYING];
-                    dyingCount++;
-                } else if (cells[i][j] == STATES[DYING]) {
-                    cells[i][j] = STATES[OFF];
-                    offCount++;
-                } else if (cells[i][j] == STATES[NEW]) {
-                    // Cells are only turned ON now to prevent miscounting in countNeighbors
-                    cells[i][j] = STATES[ON];
-                    onCount++;  
-                } else {
-                    offCount++;
+        return counts;
+    }
+    
+    // Adds a live cell of the next generation to the shape hash of a band
+    private void addShape(long[] counts, int i, int j, int state) {
+        counts[SHAPE] += hashes.term(i, j, state);
+        counts[LEFT] = Math.min(counts[LEFT], j);
+        counts[TOP] = Math.min(counts[TOP], i);
+    }
+    
+    // Stores the shape hash sum and corner of the current generation
+    private void setShape(long sum, int left, int top) {
+        if (left == Integer.MAX_VALUE) {
+            // No live cells
+            left = 0;
+            top = 0;
+        }
+        shapeSum = sum;
+        shapeLeft = left;
+        shapeTop = top;
+        shapeStale = false;
+    }
+    
+    // Recomputes the Zobrist hash and the shape of the whole grid
+    private void rehash() {
+        long[] counts = {0, 0, 0, 0, 0, Integer.MAX_VALUE, Integer.MAX_VALUE};
+        for (int i = 0; i < height; i++) {
+            for (int j = 0; j < width; j++) {
+                int state = getState(i, j);
+                if (state != OFF) {
+                    counts[ZOBRIST] ^= StateHash.zobrist(i * width + j, state);
+                    addShape(counts, i, j, state);
                 }
             }
         }
-        stepCount++;
+        zobrist = counts[ZOBRIST];
+        setShape(counts[SHAPE], (int) counts[LEFT], (int) counts[TOP]);
+    }
+    
+    // Steps a band of rows, splitting it in half until it is small enough
+    private class BandTask extends RecursiveTask<long[]> {
+        // Tasks are never serialized, RecursiveTask only makes them serializable
+        private static final long serialVersionUID = 1L;
+        private final int from;
+        private final int to;
+        
+        BandTask(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+        
+        @Override
+        protected long[] compute() {
+            if (to - from <= BAND_ROWS) {
+                return stepRows(from, to);
+            }
+            int middle = (from + to) / 2;
+            BandTask top = new BandTask(from, middle);
+            top.fork();
+            long[] counts = new BandTask(middle, to).compute();
+            long[] topCounts = top.join();
+            // Reduce the counters of both halves, hash changes combine with XOR and corners with the minimum
+            for (int k = 0; k <= DYING; k++) {
+                counts[k] += topCounts[k];
+            }
+            counts[ZOBRIST] ^= topCounts[ZOBRIST];
+            counts[SHAPE] += topCounts[SHAPE];
+            counts[LEFT] = Math.min(counts[LEFT], topCounts[LEFT]);
+            counts[TOP] = Math.min(counts[TOP], topCounts[TOP]);
+            return counts;
+        }
     }
     
     // Counts the number of Moore neighbors that are ON
@@ -195,6 +311,7 @@ public class Brain {
         offCount = 0;
         dyingCount = 0;
         stepCount = 0;
+        changes.markAll();
         for (int i = 0; i < cells.length; i++) {
             for (int j = 0; j < cells[i].length; j++) {
                 cells[i][j] = STATES[OFF];
@@ -202,6 +319,56 @@ public class Brain {
                 offCount++;
             }
         }
+        zobrist = 0;
+        setShape(0, 0, 0);
+    }
+    
+    /**
+     * Returns the state of a given cell
+     * @param i the cell row
+     * @param j the cell column
+     * @return OFF, ON or DYING
+     */
+    public int getState(int i, int j){
+        if (cells[i][j] == STATES[ON]) {
+            return ON;
+        } else if (cells[i][j] == STATES[DYING]) {
+            return DYING;
+        }
+        return OFF;
+    }
+    
+    /**
+     * Adds the tiles that changed since the last call to a set and forgets them
+     * @param dirty the set receiving the changed tiles
+     */
+    public void collectChanges(DirtyTiles dirty){
+        dirty.add(changes);
+        changes.clear();
+    }
+    
+    /**
+     * Sets the state of a given cell and keeps the counters in sync
+     * @param i the cell row
+     * @param j the cell column
+     * @param state OFF, ON or DYING
+     */
+    public void setState(int i, int j, int state){
+        // Remove the old state from the counters
+        int old = getState(i, j);
+        switch (old) {
+            case ON: onCount--; break;
+            case DYING: dyingCount--; break;
+            default: offCount--;
+        }
+        cells[i][j] = STATES[state];
+        changes.mark(i, j);
+        rehashCell(i, j, old, state);
+        switch (state) {
+            case ON: onCount++; break;
+            case DYING: dyingCount++; break;
+            default: offCount++;
+        }
     }
     
     /**
@@ -210,6 +377,9 @@ public class Brain {
      * @param j the cell column
      */
     public void switchState(int i, int j){
+        changes.mark(i, j);
+        int old = getState(i, j);
+        rehashCell(i, j, old, (old + 1) % 3);
         if (cells[i][j] == Brain.STATES[Brain.OFF]) {
             cells[i][j] = Brain.STATES[Brain.ON];
             onCount++;
@@ -225,86 +395,69 @@ public class Brain {
         }  
     }
     
-    // Copies a pattern to the center of the grid
-    private void copyPattern(char[][] pattern){
-        // Calculate top right corner of pattern to be centered
-        int row = (height - pattern.length) / 2;
-        int column = (width - pattern[0].length) / 2;
-
-        // Iterates through the grid
-        for (int i = 0; i < pattern.length; i++) {
-            for (int j = 0; j < pattern[i].length; j++) {
-                // Update cells corresponding to the pattern
-                cells[row + i][column + j] = pattern[i][j];
-            }
+    // Replaces the key of an edited cell in the Zobrist hash, the shape is recomputed when next asked for
+    private void rehashCell(int i, int j, int old, int state) {
+        if (hashes == null) {
+            return;
         }
+        zobrist ^= StateHash.zobrist(i * width + j, old) ^ StateHash.zobrist(i * width + j, state);
+        shapeStale = true;
     }
     
     /**
-     * Initializes the grid with an oscillator pattern
+     * Returns the hashes of the current generation. The first call reads the whole
+     * grid with the given hasher and from then on update keeps the hashes up to date
+     * instead, so a brain nobody hashes does not pay for it
+     * @param hasher the hash functions for the size of the grid, kept by the brain
+     * @param hash receives the Zobrist hash, the shape hash and the column and
+     *             row of the top left corner of the live cells
      */
-    public void createOscillator() {
-        // Make sure grid is clear
-        clear();
-        
-        // Set all counters to correct value
-        onCount = 4;
-        dyingCount = 4;
-        offCount = width * height - onCount - dyingCount;
-        stepCount = 0;
-        
-        copyPattern(OSCILLATOR);
+    public void hashState(StateHash hasher, long[] hash){
+        if (hashes != hasher) {
+            hashes = hasher;
+            rehash();
+        } else if (shapeStale) {
+            rehash();
+        }
+        hash[0] = zobrist;
+        hash[1] = hashes.normalize(shapeSum, shapeLeft, shapeTop);
+        hash[2] = shapeLeft;
+        hash[3] = shapeTop;
     }
     
-     /**
-     * Initializes the grid with a static, horizontally moving pattern
+    /**
+     * Enables or disables parallel stepping. In parallel mode the grid is split
+     * into horizontal bands that are stepped on the common fork/join pool, the
+     * resulting generation is identical to the serial one
+     * @param parallel if true update uses all available cores
      */
-    public void createLinear() {
-        // Make sure grid is clear
-        clear();
-
-        // Set all counters to correct value
-        onCount = 7;
-        dyingCount = 7;
-        offCount = width * height - onCount - dyingCount;
-        stepCount = 0;
-
-        copyPattern(LINEAR);
+    public void setParallel(boolean parallel){
+        this.parallel = parallel;
     }
     
     /**
-     * Initializes the grid with a cyclical, diagonally moving pattern
+     * Returns whether the simulation is stepped in parallel
+     * @return true if parallel stepping is enabled
      */
-    public void createDiagonal() {
-        // Make sure grid is clear
-        clear();
-
-        // Set all counters to correct value
-        onCount = 3;
-        dyingCount = 3;
-        offCount = width * height - onCount - dyingCount;
-        stepCount = 0;
-
-        copyPattern(DIAGONAL);
+    public boolean isParallel(){
+        return parallel;
     }
     
     /**
-     * Initializes the grid with an interesting evolving pattern
+     * Returns the number of ON neighbors that turns an OFF cell on
+     * @return the birth number
      */
-    public void createExpanding() {
-        // Make sure grid is clear
-        clear();
-
-        // Set all counters to correct value
-        onCount = 7;
-        dyingCount = 4;
-        offCount = width * height - onCount - dyingCount;
-        stepCount = 0;
-
-        copyPattern(EXPANDING);
+    public int getBirthNumber(){
+        return birthNumber;
+    }
+    
+    /**
+     * Returns whether the grid wraps around both horizontally and vertically
+     * @return true if the grid wraps
+     */
+    public boolean isWrapping(){
+        return wrapping;
     }
-
-  
     
     /**
      * Returns the width of the grid
@@ -353,5 +506,13 @@ public class Brain {
     public int getStepCount(){
         return stepCount;
     }
+    
+    /**
+     * Sets the simulation step, for a grid restored from a file
+     * @param stepCount the simulation step
+     */
+    public void setStepCount(int stepCount){
+        this.stepCount = stepCount;
+    }
 }
 
@@ -0,0 +1,347 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package automatastarter;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Data model for Brian's Brain simulation that keeps the number of ON
+ * neighbors of every cell up to date instead of recounting them.
+ * The counts only change when a cell enters or leaves the ON state, and every
+ * ON cell leaves it after one step, so the work per step follows the number
+ * of live cells rather than the size of the grid
+ * @author paul
+ */
+public class CountingBrain implements SimulationEngine {
+    // Temporary state of a cell that is born during the current step
+    private static final byte BORN = 3;
+
+    // Initialise variables
+    private int height;
+    private int width;
+    private int birthNumber;
+    private boolean wrapping;
+    private byte[] cells;
+    // Number of ON Moore neighbors of every cell
+    private byte[] neighbors;
+    // Indices of the cells that are currently ON and DYING
+    private int[] onList;
+    private int onSize;
+    private int[] dyingList;
+    private int dyingSize;
+    // Cells born during the current step
+    private int[] bornList;
+    // Position of every ON or DYING cell in its list, so it can be removed without a search
+    private int[] listPosition;
+    private int[] neighborIndex = new int[8];
+    // Tiles that changed since the renderer last collected them
+    private DirtyTiles changes;
+    private int onCount;
+    private int offCount;
+    private int dyingCount;
+    private int stepCount;
+
+    /**
+     * Constructor, creates a counting brain simulation given the parameter values
+     * @param width the width of the grid
+     * @param height the height of the grid
+     * @param birthNumber the number of neighboring cells that must be on in
+     *                    order an off cell on
+     * @param wrapping if true the grid wraps both horizontally and vertically
+     */
+    public CountingBrain(int width, int height, int birthNumber, boolean wrapping){
+        this.width = width;
+        this.height = height;
+        this.birthNumber = birthNumber;
+        this.wrapping = wrapping;
+        cells = new byte[width * height];
+        neighbors = new byte[width * height];
+        listPosition = new int[width * height];
+        onList = new int[16];
+        dyingList = new int[16];
+        bornList = new int[16];
+        changes = new DirtyTiles(width, height);
+        clear();
+    }
+
+    /**
+     * Initialize the simulation with a random pattern
+     */
+    public void randomize() {
+        clear();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int k = 0; k < cells.length; k++) {
+            // Assigns the random state not including DYING
+            if (random.nextBoolean()) {
+                setState(k / width, k % width, Brain.ON);
+            }
+        }
+    }
+
+    /**
+     * Advance the simulation by one step
+     */
+    public void update() {
+        // Find the births, only neighbors of ON cells can have a non-zero count
+        int bornSize = 0;
+        if (birthNumber == 0) {
+            // Cells without ON neighbors are born, so every cell is a candidate
+            for (int k = 0; k < cells.length; k++) {
+                if (cells[k] == Brain.OFF && neighbors[k] == 0) {
+                    cells[k] = BORN;
+                    bornList = grow(bornList, bornSize);
+                    listPosition[k] = bornSize;
+                    bornList[bornSize++] = k;
+                }
+            }
+        } else {
+            for (int n = 0; n < onSize; n++) {
+                int found = findNeighbors(onList[n]);
+                for (int d = 0; d < found; d++) {
+                    int k = neighborIndex[d];
+                    if (cells[k] == Brain.OFF && neighbors[k] == birthNumber) {
+                        // Marking the cell BORN also stops it from being found twice
+                        cells[k] = BORN;
+                        bornList = grow(bornList, bornSize);
+                        listPosition[k] = bornSize;
+                        bornList[bornSize++] = k;
+                    }
+                }
+            }
+        }
+
+        // DYING cells turn off
+        for (int n = 0; n < dyingSize; n++) {
+            cells[dyingList[n]] = Brain.OFF;
+            changes.mark(dyingList[n] / width, dyingList[n] % width);
+        }
+        // ON cells start dying and stop counting as neighbors
+        for (int n = 0; n < onSize; n++) {
+            int k = onList[n];
+            cells[k] = Brain.DYING;
+            addToNeighbors(k, -1);
+            changes.mark(k / width, k % width);
+        }
+        // Born cells turn on and start counting as neighbors
+        for (int n = 0; n < bornSize; n++) {
+            int k = bornList[n];
+            cells[k] = Brain.ON;
+            addToNeighbors(k, 1);
+            changes.mark(k / width, k % width);
+        }
+
+        // The old ON list becomes the DYING list and the births the ON list, the positions stay valid
+        int[] temp = dyingList;
+        dyingList = onList;
+        dyingSize = onSize;
+        onList = bornList;
+        onSize = bornSize;
+        bornList = temp;
+        onCount = onSize;
+        dyingCount = dyingSize;
+        offCount = width * height - onCount - dyingCount;
+        stepCount++;
+    }
+
+    // Makes sure a list can take one more index
+    private static int[] grow(int[] list, int size) {
+        return (size < list.length) ? list : Arrays.copyOf(list, list.length * 2);
+    }
+
+    // Stores the indices of the Moore neighbors of a cell in neighborIndex and returns how many there are
+    private int findNeighbors(int k) {
+        int i = k / width;
+        int j = k % width;
+        int found = 0;
+        for (int di = -1; di <= 1; di++) {
+            for (int dj = -1; dj <= 1; dj++) {
+                if (di == 0 && dj == 0) {
+                    continue;
+                }
+                int ni = i + di;
+                int nj = j + dj;
+                if (wrapping) {
+                    ni = (ni + height) % height;
+                    nj = (nj + width) % width;
+                } else if (ni < 0 || ni >= height || nj < 0 || nj >= width) {
+                    continue;
+                }
+                // On tiny wrapping grids a cell can be the same neighbor in several directions
+                neighborIndex[found++] = ni * width + nj;
+            }
+        }
+        return found;
+    }
+
+    // Adds delta to the neighbor count of all Moore neighbors of a cell
+    private void addToNeighbors(int k, int delta) {
+        int found = findNeighbors(k);
+        for (int d = 0; d < found; d++) {
+            neighbors[neighborIndex[d]] = (byte) (neighbors[neighborIndex[d]] + delta);
+        }
+    }
+
+    /**
+     * Reset all cells to off state
+     */
+    public void clear(){
+        Arrays.fill(cells, (byte) Brain.OFF);
+        Arrays.fill(neighbors, (byte) 0);
+        changes.markAll();
+        onSize = 0;
+        dyingSize = 0;
+        // Reset all counters
+        onCount = 0;
+        dyingCount = 0;
+        stepCount = 0;
+        offCount = width * height;
+    }
+
+    /**
+     * Returns the state of a given cell
+     * @param i the cell row
+     * @param j the cell column
+     * @return Brain.OFF, Brain.ON or Brain.DYING
+     */
+    public int getState(int i, int j){
+        return cells[i * width + j];
+    }
+
+    /**
+     * Copies the state of every cell into an array in row order
+     * @param states receives width * height states
+     */
+    public void copyStates(byte[] states){
+        System.arraycopy(cells, 0, states, 0, cells.length);
+    }
+
+    /**
+     * Adds the tiles that changed since the last call to a set and forgets them
+     * @param dirty the set receiving the changed tiles
+     */
+    public void collectChanges(DirtyTiles dirty){
+        dirty.add(changes);
+        changes.clear();
+    }
+
+    /**
+     * Sets the state of a given cell and keeps the counters in sync
+     * @param i the cell row
+     * @param j the cell column
+     * @param state Brain.OFF, Brain.ON or Brain.DYING
+     */
+    public void setState(int i, int j, int state){
+        int k = i * width + j;
+        int old = cells[k];
+        if (old == state) {
+            return;
+        }
+        // Take the cell out of its old list
+        if (old == Brain.ON) {
+            onSize = removeFrom(onList, onSize, k);
+            addToNeighbors(k, -1);
+        } else if (old == Brain.DYING) {
+            dyingSize = removeFrom(dyingList, dyingSize, k);
+        }
+        cells[k] = (byte) state;
+        changes.mark(i, j);
+        // And add it to the new one
+        if (state == Brain.ON) {
+            onList = grow(onList, onSize);
+            listPosition[k] = onSize;
+            onList[onSize++] = k;
+            addToNeighbors(k, 1);
+        } else if (state == Brain.DYING) {
+            dyingList = grow(dyingList, dyingSize);
+            listPosition[k] = dyingSize;
+            dyingList[dyingSize++] = k;
+        }
+        onCount = onSize;
+        dyingCount = dyingSize;
+        offCount = width * height - onCount - dyingCount;
+    }
+
+    // Removes an index from a list by moving the last entry into its place and returns the new size
+    private int removeFrom(int[] list, int size, int k) {
+        int n = listPosition[k];
+        int last = list[size - 1];
+        list[n] = last;
+        listPosition[last] = n;
+        return size - 1;
+    }
+
+    /**
+     * Returns the number of ON neighbors that turns an OFF cell on
+     * @return the birth number
+     */
+    public int getBirthNumber(){
+        return birthNumber;
+    }
+
+    /**
+     * Returns whether the grid wraps around both horizontally and vertically
+     * @return true if the grid wraps
+     */
+    public boolean isWrapping(){
+        return wrapping;
+    }
+
+    /**
+     * Returns the width of the grid
+     * @return the width of the grid
+     */
+    public int getWidth(){
+        return width;
+    }
+
+    /**
+     * Returns the height of the grid
+     * @return the height of the grid
+     */
+    public int getHeight(){
+        return height;
+    }
+
+    /**
+     * Returns the number of cells with off status
+     * @return the number of off cells
+     */
+    public int getOffCount(){
+        return offCount;
+    }
+
+    /**
+     * Returns the number of cells with on status
+     * @return the number of on cells
+     */
+    public int getOnCount(){
+        return onCount;
+    }
+
+    /**
+     * Returns the number of cells with dying status
+     * @return the number of dying cells
+     */
+    public int getDyingCount(){
+        return dyingCount;
+    }
+
+    /**
+     * Returns the current simulation step
+     * @return the simulation step
+     */
+    public int getStepCount(){
+        return stepCount;
+    }
+
+    /**
+     * Sets the simulation step, for a grid restored from a file
+     * @param stepCount the simulation step
+     */
+    public void setStepCount(int stepCount){
+        this.stepCount = stepCount;
+    }
+}
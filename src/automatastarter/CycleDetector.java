@@ -0,0 +1,291 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package automatastarter;
+
+import utils.LongHashMap;
+
+/**
+ * Watches the generations of an engine and reports as soon as the simulation
+ * dies out, stops changing or repeats itself. Every generation is reduced to
+ * a Zobrist hash of the whole grid and a shape hash that ignores where the
+ * live cells are, the hashes of the last generations are kept in a bounded
+ * table so finding an earlier generation with the same hash takes constant time.
+ * A repeat of the Zobrist hash is a cycle in place, a repeat of the shape hash
+ * alone is a pattern that moved. A cycle is only reported once two generations
+ * in a row repeat with the same period and displacement, and a moved pattern
+ * only counts on a wrapping grid
+ * @author paul
+ */
+public class CycleDetector {
+    /**
+     * What the detector has found so far
+     */
+    public enum Status {
+        RUNNING, EXTINCT, STILL, PERIODIC
+    }
+
+    // Number of generations remembered by default
+    public static final int DEFAULT_HISTORY = 1024;
+    // Number of generations in a row that must repeat before a cycle is reported
+    private static final int CONFIRMATIONS = 2;
+
+    // Initialise variables
+    private final int capacity;
+    // Ring of the hashes, corners and steps of the last generations
+    private final long[] exact;
+    private final long[] shapes;
+    private final int[] lefts;
+    private final int[] tops;
+    private final int[] steps;
+    // Newest position in the ring of every hash
+    private final LongHashMap<Long> exactIndex = new LongHashMap<>();
+    private final LongHashMap<Long> shapeIndex = new LongHashMap<>();
+    private final long[] hash = new long[4];
+    private StateHash hasher;
+    private int width;
+    private int height;
+    private boolean wrapping;
+    private long observed;
+    private Status status;
+    private int period;
+    private int dx;
+    private int dy;
+    private int start;
+    // Repeat seen on the last generations that still has to be confirmed
+    private int candidatePeriod;
+    private int candidateDx;
+    private int candidateDy;
+    private int candidateStart;
+    private int streak;
+
+    /**
+     * Constructor, remembers the default number of generations
+     */
+    public CycleDetector() {
+        this(DEFAULT_HISTORY);
+    }
+
+    /**
+     * Constructor, cycles longer than the history are never found
+     * @param history the number of generations remembered
+     */
+    public CycleDetector(int history) {
+        capacity = history;
+        exact = new long[history];
+        shapes = new long[history];
+        lefts = new int[history];
+        tops = new int[history];
+        steps = new int[history];
+        reset();
+    }
+
+    /**
+     * Forgets every generation, call it whenever the grid is edited
+     */
+    public void reset() {
+        exactIndex.clear();
+        shapeIndex.clear();
+        observed = 0;
+        status = Status.RUNNING;
+        period = 0;
+        dx = 0;
+        dy = 0;
+        start = 0;
+        streak = 0;
+    }
+
+    /**
+     * Records the current generation of an engine, which must be observed after every update.
+     * Once something was found every generation is checked against it, and the detector goes
+     * back to running when the grid leaves the cycle, for example after an edit
+     * @param brain the engine
+     * @return the status
+     */
+    public Status observe(SimulationEngine brain) {
+        int step = brain.getStepCount();
+        if (brain.getOnCount() == 0 && brain.getDyingCount() == 0 && brain.getBirthNumber() != 0) {
+            // Nothing can ever be born again, with birth number 0 an empty grid fills up instead
+            if (status != Status.EXTINCT) {
+                status = Status.EXTINCT;
+                period = 1;
+                dx = 0;
+                dy = 0;
+                start = step;
+            }
+            return status;
+        }
+        if (hasher == null || brain.getWidth() != width || brain.getHeight() != height) {
+            width = brain.getWidth();
+            height = brain.getHeight();
+            hasher = new StateHash(width, height);
+        }
+        wrapping = brain.isWrapping();
+        brain.hashState(hasher, hash);
+
+        if (status != Status.RUNNING) {
+            if (status != Status.EXTINCT && continuesCycle(step)) {
+                record(step);
+                return status;
+            }
+            // The grid left what was found, look for a new cycle from here
+            status = Status.RUNNING;
+            streak = 0;
+        }
+
+        // Look for the newest earlier generation with the same cells, or the same cells somewhere else
+        int repeat = 0;
+        int moveX = 0;
+        int moveY = 0;
+        int repeatStart = 0;
+        Long seen = exactIndex.get(hash[0]);
+        if (seen == null && wrapping) {
+            /* Only a wrapping grid can repeat a moved pattern forever, on a bounded grid
+               it reaches the border and the same shape elsewhere is no cycle
+            */
+            seen = shapeIndex.get(hash[1]);
+            if (seen != null) {
+                int slot = (int) (seen % capacity);
+                moveX = moveX(slot);
+                moveY = moveY(slot);
+            }
+        }
+        if (seen != null) {
+            int slot = (int) (seen % capacity);
+            repeat = step - steps[slot];
+            repeatStart = steps[slot];
+        }
+
+        if (repeat > 0 && repeat == candidatePeriod && moveX == candidateDx && moveY == candidateDy && streak > 0) {
+            streak++;
+        } else if (repeat > 0) {
+            candidatePeriod = repeat;
+            candidateDx = moveX;
+            candidateDy = moveY;
+            candidateStart = repeatStart;
+            streak = 1;
+        } else {
+            streak = 0;
+        }
+        record(step);
+
+        if (streak >= CONFIRMATIONS) {
+            period = candidatePeriod;
+            dx = candidateDx;
+            dy = candidateDy;
+            start = candidateStart;
+            status = (period == 1 && dx == 0 && dy == 0) ? Status.STILL : Status.PERIODIC;
+        }
+        return status;
+    }
+
+    // Returns true if the current generation repeats the one a period earlier, moved as found
+    private boolean continuesCycle(int step) {
+        Long seen = (dx == 0 && dy == 0) ? exactIndex.get(hash[0]) : shapeIndex.get(hash[1]);
+        if (seen == null) {
+            return false;
+        }
+        int slot = (int) (seen % capacity);
+        return step - steps[slot] == period && (dx == 0 && dy == 0 || moveX(slot) == dx && moveY(slot) == dy);
+    }
+
+    // Returns the columns the live cells moved since a remembered generation
+    private int moveX(int slot) {
+        int move = (int) hash[2] - lefts[slot];
+        return wrapping ? wrap(move, width) : move;
+    }
+
+    // Returns the rows the live cells moved since a remembered generation
+    private int moveY(int slot) {
+        int move = (int) hash[3] - tops[slot];
+        return wrapping ? wrap(move, height) : move;
+    }
+
+    // Stores the hashes of the current generation, dropping the oldest one when the ring is full
+    private void record(int step) {
+        int slot = (int) (observed % capacity);
+        if (observed >= capacity) {
+            // Only forget a hash if no newer generation has replaced it
+            Long old = observed - capacity;
+            if (old.equals(exactIndex.get(exact[slot]))) {
+                exactIndex.remove(exact[slot]);
+            }
+            if (old.equals(shapeIndex.get(shapes[slot]))) {
+                shapeIndex.remove(shapes[slot]);
+            }
+        }
+        exact[slot] = hash[0];
+        shapes[slot] = hash[1];
+        lefts[slot] = (int) hash[2];
+        tops[slot] = (int) hash[3];
+        steps[slot] = step;
+        exactIndex.put(hash[0], observed);
+        shapeIndex.put(hash[1], observed);
+        observed++;
+    }
+
+    // Returns the shortest displacement on a wrapping axis
+    private static int wrap(int move, int size) {
+        move = Math.floorMod(move, size);
+        return move > size / 2 ? move - size : move;
+    }
+
+    /**
+     * Returns what the detector has found
+     * @return the status
+     */
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * Returns the number of generations after which the grid repeats
+     * @return the period, 1 for still and extinct grids, 0 while running
+     */
+    public int getPeriod() {
+        return period;
+    }
+
+    /**
+     * Returns how many columns the pattern moves in one period
+     * @return the horizontal displacement
+     */
+    public int getDx() {
+        return dx;
+    }
+
+    /**
+     * Returns how many rows the pattern moves in one period
+     * @return the vertical displacement
+     */
+    public int getDy() {
+        return dy;
+    }
+
+    /**
+     * Returns the first step of the cycle
+     * @return the step the grid first had a repeated state
+     */
+    public int getStart() {
+        return start;
+    }
+
+    /**
+     * Describes the status for the user
+     * @return for example "period 3 from step 12" or "period 1 moving (1, 0) from step 2"
+     */
+    public String describe() {
+        switch (status) {
+            case EXTINCT:
+                return "extinct at step " + start;
+            case STILL:
+                return "still from step " + start;
+            case PERIODIC:
+                return "period " + period + (dx != 0 || dy != 0 ? " moving (" + dx + ", " + dy + ")" : "")
+                        + " from step " + start;
+            default:
+                return "running";
+        }
+    }
+}
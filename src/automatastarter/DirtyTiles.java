@@ -0,0 +1,127 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package automatastarter;
+
+import java.util.Arrays;
+
+/**
+ * Set of the square tiles of a grid in which at least one cell changed.
+ * Engines collect their changes into it so the renderer only has to redraw
+ * the parts of the grid that are different from the last frame.
+ * Marking is a plain byte store, so row bands stepped on several threads
+ * can mark the same set
+ * @author paul
+ */
+public class DirtyTiles {
+    // Side of a square tile in cells
+    public static final int TILE = 16;
+
+    // Initialise variables
+    private final int columns;
+    private final int rows;
+    private final byte[] tiles;
+    private boolean empty;
+    // True when every tile was marked at once
+    private boolean all;
+
+    /**
+     * Constructor, creates an empty set for a grid of the given size
+     * @param width the width of the grid
+     * @param height the height of the grid
+     */
+    public DirtyTiles(int width, int height) {
+        columns = (width + TILE - 1) / TILE;
+        rows = (height + TILE - 1) / TILE;
+        tiles = new byte[columns * rows];
+        empty = true;
+    }
+
+    /**
+     * Marks the tile holding a given cell as changed
+     * @param i the cell row
+     * @param j the cell column
+     */
+    public void mark(int i, int j) {
+        tiles[(i / TILE) * columns + j / TILE] = 1;
+        empty = false;
+    }
+
+    /**
+     * Marks every tile as changed
+     */
+    public void markAll() {
+        Arrays.fill(tiles, (byte) 1);
+        empty = false;
+        all = true;
+    }
+
+    /**
+     * Adds all tiles marked in another set of the same size
+     * @param other the other set
+     */
+    public void add(DirtyTiles other) {
+        if (other.empty) {
+            return;
+        }
+        for (int k = 0; k < tiles.length; k++) {
+            tiles[k] |= other.tiles[k];
+        }
+        empty = false;
+        all |= other.all;
+    }
+
+    /**
+     * Removes all marks
+     */
+    public void clear() {
+        if (!empty) {
+            Arrays.fill(tiles, (byte) 0);
+            empty = true;
+            all = false;
+        }
+    }
+
+    /**
+     * Returns whether a tile has changed
+     * @param row the tile row
+     * @param column the tile column
+     * @return true if a cell in the tile changed
+     */
+    public boolean isDirty(int row, int column) {
+        return tiles[row * columns + column] != 0;
+    }
+
+    /**
+     * Returns whether no tile is marked
+     * @return true if nothing changed
+     */
+    public boolean isEmpty() {
+        return empty;
+    }
+
+    /**
+     * Returns whether every tile was marked at once, so redrawing everything is cheaper
+     * @return true if the whole grid changed
+     */
+    public boolean isAll() {
+        return all;
+    }
+
+    /**
+     * Returns the number of tile columns
+     * @return the number of tile columns
+     */
+    public int getColumns() {
+        return columns;
+    }
+
+    /**
+     * Returns the number of tile rows
+     * @return the number of tile rows
+     */
+    public int getRows() {
+        return rows;
+    }
+}
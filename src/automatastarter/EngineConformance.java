@@ -0,0 +1,208 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package automatastarter;
+
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Differential check of every engine against the reference Brain.
+ * Seeded random soups and the patterns of the library are run through each engine
+ * next to a Brain, and the state hash and cell counts must match after every
+ * generation. The lanes of EnsembleBrain are checked the same way.
+ * Run with: ant conformance, the same cases also run under ant test
+ * @author paul
+ */
+public class EngineConformance {
+    // Generations simulated for every case
+    private static final int GENERATIONS = 48;
+    // Grid sizes used for the bounded engines, including odd and tiny ones
+    private static final int[][] SIZES = {{1, 1}, {3, 2}, {5, 7}, {37, 29}, {64, 48}, {130, 67}};
+    // Lanes of the ensemble compared with a reference, the other lanes hold soups of their own
+    private static final int[] LANES = {0, 1, 37, EnsembleBrain.LANES - 1};
+    // Side of the viewport used for the unbounded engines
+    private static final int UNBOUNDED_SIZE = 2 * GENERATIONS + 48;
+
+    // Initialise variables
+    private int cases;
+    private int failures;
+    private final PatternLibrary library = new PatternLibrary();
+
+    /**
+     * Runs all cases and exits with status 1 if an engine disagrees with the reference
+     * @param args an optional random seed
+     * @throws IOException if a pattern of the library cannot be read
+     */
+    public static void main(String[] args) throws IOException {
+        long seed = (args.length > 0) ? Long.parseLong(args[0]) : 1;
+        EngineConformance conformance = new EngineConformance();
+        for (EngineType type : EngineType.values()) {
+            if (type != EngineType.REFERENCE) {
+                conformance.checkEngine(type, new Random(seed));
+            }
+        }
+        conformance.checkEnsemble(new Random(seed));
+        System.out.println(conformance.cases + " cases, " + conformance.failures + " failures");
+        if (conformance.failures > 0) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Runs the soups and patterns through one engine
+     * @param type the engine compared with the reference
+     * @param random the source of the soups
+     * @throws IOException if a pattern of the library cannot be read
+     */
+    void checkEngine(EngineType type, Random random) throws IOException {
+        if (type.isBounded()) {
+            for (int[] size : SIZES) {
+                for (int birthNumber = 0; birthNumber <= 8; birthNumber++) {
+                    for (boolean wrapping : new boolean[]{true, false}) {
+                        String name = "soup " + size[0] + "x" + size[1] + " B" + birthNumber + (wrapping ? " wrap" : "");
+                        SimulationEngine reference = new Brain(size[0], size[1], birthNumber, wrapping);
+                        SimulationEngine engine = type.create(size[0], size[1], birthNumber, wrapping);
+                        soup(random, reference, engine, 0);
+                        compare(type, name, reference, engine);
+                    }
+                }
+            }
+        } else {
+            // Keep the soup far enough from the edges that the reference grid never sees them
+            for (int birthNumber = 1; birthNumber <= 8; birthNumber++) {
+                String name = "soup " + UNBOUNDED_SIZE + "x" + UNBOUNDED_SIZE + " B" + birthNumber;
+                SimulationEngine reference = new Brain(UNBOUNDED_SIZE, UNBOUNDED_SIZE, birthNumber, false);
+                SimulationEngine engine = type.create(UNBOUNDED_SIZE, UNBOUNDED_SIZE, birthNumber, false);
+                soup(random, reference, engine, GENERATIONS + 1);
+                compare(type, name, reference, engine);
+            }
+        }
+
+        // The library patterns with the default birth number
+        for (int p = 0; p < library.getNames().size(); p++) {
+            for (boolean wrapping : type.isBounded() ? new boolean[]{true, false} : new boolean[]{false}) {
+                SimulationEngine reference = new Brain(UNBOUNDED_SIZE, UNBOUNDED_SIZE, 2, wrapping);
+                SimulationEngine engine = type.create(UNBOUNDED_SIZE, UNBOUNDED_SIZE, 2, wrapping);
+                library.load(p, reference);
+                library.load(p, engine);
+                compare(type, library.getNames().get(p) + (wrapping ? " wrap" : ""), reference, engine);
+            }
+        }
+    }
+
+    /**
+     * Runs a soup in every lane of an ensemble and compares some of the lanes with the reference
+     * @param random the source of the soups
+     */
+    void checkEnsemble(Random random) {
+        for (int[] size : SIZES) {
+            for (int birthNumber = 0; birthNumber <= 8; birthNumber++) {
+                for (boolean wrapping : new boolean[]{true, false}) {
+                    cases++;
+                    EnsembleBrain ensemble = new EnsembleBrain(size[0], size[1], birthNumber, wrapping);
+                    SimulationEngine[] references = new SimulationEngine[EnsembleBrain.LANES];
+                    for (int lane = 0; lane < EnsembleBrain.LANES; lane++) {
+                        references[lane] = new Brain(size[0], size[1], birthNumber, wrapping);
+                        soup(random, references[lane], references[lane], 0);
+                        ensemble.loadLane(lane, references[lane]);
+                    }
+                    String name = "soup " + size[0] + "x" + size[1] + " B" + birthNumber + (wrapping ? " wrap" : "");
+                    compareLanes(name, ensemble, references);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the number of cases checked so far
+     * @return the number of cases
+     */
+    int getCases() {
+        return cases;
+    }
+
+    /**
+     * Returns the number of cases where an engine disagreed with the reference
+     * @return the number of failed cases
+     */
+    int getFailures() {
+        return failures;
+    }
+
+    // Steps the ensemble and its references and reports the first lane and generation where they differ
+    private void compareLanes(String name, EnsembleBrain ensemble, SimulationEngine[] references) {
+        for (int generation = 0; generation <= GENERATIONS; generation++) {
+            if (generation > 0) {
+                ensemble.update();
+                for (int lane : LANES) {
+                    references[lane].update();
+                }
+            }
+            for (int lane : LANES) {
+                SimulationEngine reference = references[lane];
+                SimulationEngine extracted = new Brain(reference.getWidth(), reference.getHeight(),
+                        reference.getBirthNumber(), reference.isWrapping());
+                ensemble.copyLane(lane, extracted);
+                if (hash(reference) != hash(extracted)
+                        || reference.getOnCount() != ensemble.getOnCount(lane)
+                        || reference.getDyingCount() != ensemble.getDyingCount(lane)
+                        || reference.getOffCount() != ensemble.getOffCount(lane)) {
+                    failures++;
+                    System.out.println("FAIL Ensemble: " + name + " lane " + lane + " differs at generation " + generation);
+                    return;
+                }
+            }
+        }
+    }
+
+    // Fills the area inside the margin of both engines with the same random cells
+    private static void soup(Random random, SimulationEngine reference, SimulationEngine engine, int margin) {
+        for (int i = margin; i < reference.getHeight() - margin; i++) {
+            for (int j = margin; j < reference.getWidth() - margin; j++) {
+                // Mostly ON and OFF cells with a few DYING ones
+                int roll = random.nextInt(8);
+                int state = (roll < 3) ? Brain.ON : (roll == 3) ? Brain.DYING : Brain.OFF;
+                reference.setState(i, j, state);
+                engine.setState(i, j, state);
+            }
+        }
+    }
+
+    // Steps both engines and reports the first generation where they differ
+    private void compare(EngineType type, String name, SimulationEngine reference, SimulationEngine engine) {
+        cases++;
+        for (int generation = 0; generation <= GENERATIONS; generation++) {
+            if (generation > 0) {
+                reference.update();
+                engine.update();
+            }
+            if (hash(reference) != hash(engine)
+                    || reference.getOnCount() != engine.getOnCount()
+                    || reference.getDyingCount() != engine.getDyingCount()
+                    || reference.getOffCount() != engine.getOffCount()) {
+                failures++;
+                System.out.println("FAIL " + type + ": " + name + " differs at generation " + generation
+                        + " (on " + reference.getOnCount() + "/" + engine.getOnCount()
+                        + ", dying " + reference.getDyingCount() + "/" + engine.getDyingCount() + ")");
+                return;
+            }
+        }
+    }
+
+    /**
+     * Hashes the states of all cells of an engine in row order
+     * @param engine the engine to hash
+     * @return the state hash
+     */
+    static long hash(SimulationEngine engine) {
+        long hash = 1;
+        for (int i = 0; i < engine.getHeight(); i++) {
+            for (int j = 0; j < engine.getWidth(); j++) {
+                hash = hash * 31 + engine.getState(i, j);
+            }
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package automatastarter;
+
+/**
+ * The available simulation backends and how to create them
+ * @author paul
+ */
+public enum EngineType {
+    REFERENCE("Reference", true),
+    PARALLEL("Parallel", true),
+    BITPLANE("Bitplane", true),
+    TILED("Tiled", true),
+    COUNTING("Counting", true),
+    HALO("Halo", true),
+    VECTOR("Vector", true),
+    HASHLIFE("HashLife", false),
+    SPARSE("Sparse", false);
+
+    // Initialise variables
+    private final String label;
+    private final boolean bounded;
+
+    EngineType(String label, boolean bounded) {
+        this.label = label;
+        this.bounded = bounded;
+    }
+
+    /**
+     * Creates an engine of this type
+     * @param width the width of the grid
+     * @param height the height of the grid
+     * @param birthNumber the number of neighboring cells that must be on in
+     *                    order an off cell on
+     * @param wrapping if true the grid wraps both horizontally and vertically,
+     *                 ignored by the unbounded engines
+     * @return the new engine
+     */
+    public SimulationEngine create(int width, int height, int birthNumber, boolean wrapping) {
+        switch (this) {
+            case PARALLEL:
+                Brain parallel = new Brain(width, height, birthNumber, wrapping);
+                parallel.setParallel(true);
+                return parallel;
+            case BITPLANE:
+                return new BitBrain(width, height, birthNumber, wrapping);
+            case TILED:
+                return new TiledBrain(width, height, birthNumber, wrapping);
+            case COUNTING:
+                return new CountingBrain(width, height, birthNumber, wrapping);
+            case HALO:
+                return new HaloBrain(width, height, birthNumber, wrapping);
+            case VECTOR:
+                // Falls back to the scalar kernel when the Vector API is not enabled
+                HaloBrain vector = new HaloBrain(width, height, birthNumber, wrapping);
+                vector.setVectorized(true);
+                return vector;
+            case HASHLIFE:
+                return new HashLifeBrain(width, height, birthNumber);
+            case SPARSE:
+                return new SparseBrain(width, height, birthNumber);
+            default:
+                return new Brain(width, height, birthNumber, wrapping);
+        }
+    }
+
+    /**
+     * Returns the type of an engine, so another engine of the same kind can be created
+     * @param brain the engine
+     * @return the engine type
+     */
+    public static EngineType of(SimulationEngine brain) {
+        if (brain instanceof Brain) {
+            return ((Brain) brain).isParallel() ? PARALLEL : REFERENCE;
+        } else if (brain instanceof BitBrain) {
+            return BITPLANE;
+        } else if (brain instanceof TiledBrain) {
+            return TILED;
+        } else if (brain instanceof CountingBrain) {
+            return COUNTING;
+        } else if (brain instanceof HaloBrain) {
+            return ((HaloBrain) brain).isVectorized() ? VECTOR : HALO;
+        } else if (brain instanceof HashLifeBrain) {
+            return HASHLIFE;
+        } else if (brain instanceof SparseBrain) {
+            return SPARSE;
+        }
+        throw new IllegalArgumentException("Unknown engine " + brain.getClass().getName());
+    }
+
+    /**
+     * Returns whether the engine simulates a finite grid. Unbounded engines
+     * never wrap and need a birth number of at least 1
+     * @return true if the grid has edges
+     */
+    public boolean isBounded() {
+        return bounded;
+    }
+
+    /**
+     * Returns whether engines of this type can run a birth number, any from 0 to 8
+     * on a bounded grid and from 1 on an unbounded plane, where B0 would fill all of space
+     * @param birthNumber the number of ON neighbors that turns an OFF cell on
+     * @return true if the birth number can be simulated
+     */
+    public boolean supportsBirthNumber(int birthNumber) {
+        return birthNumber >= (bounded ? 0 : 1) && birthNumber <= 8;
+    }
+
+    /**
+     * Looks up an engine type by name, ignoring case
+     * @param name the name or label of the engine
+     * @return the engine type
+     */
+    public static EngineType parse(String name) {
+        for (EngineType type : values()) {
+            if (type.name().equalsIgnoreCase(name) || type.label.equalsIgnoreCase(name)) {
+                return type;
+            }
+        }
+        throw new IllegalArgumentException("Unknown engine: " + name);
+    }
+
+    @Override
+    public String toString() {
+        return label;
+    }
+}
@@ -0,0 +1,364 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package automatastarter;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Runs 64 independent Brian's Brain simulations of the same size and rule in lockstep.
+ * Every cell of the grid is one long per state, and bit k of it belongs to
+ * simulation k, the lane. One step counts the neighbors of a cell in all
+ * lanes at once with the bitwise adders of BitBrain, so the cost of a step
+ * is that of one grid however many lanes are used. This suits Monte Carlo
+ * studies of many small grids, where separate engines would spend most of
+ * their time outside the actual counting.
+ * The grid has a border of one cell, copied from the opposite edge when the
+ * grid wraps and left OFF when it does not, so no cell needs a bounds check
+ * @author paul
+ */
+public class EnsembleBrain {
+    // Number of simulations run at once
+    public static final int LANES = 64;
+    // Bits of precision of the density of a random fill
+    private static final int DENSITY_BITS = 16;
+
+    // Initialise variables
+    private final int width;
+    private final int height;
+    private final int birthNumber;
+    private final boolean wrapping;
+    // Row length including the border
+    private final int stride;
+    // Lanes that are ON, or DYING, for every cell including the border
+    private long[] on;
+    private long[] dying;
+    private long[] nextOn;
+    private long[] nextDying;
+    private int stepCount;
+
+    /**
+     * Constructor, creates 64 empty simulations given the parameter values
+     * @param width the width of the grid
+     * @param height the height of the grid
+     * @param birthNumber the number of neighboring cells that must be on in
+     *                    order an off cell on
+     * @param wrapping if true the grid wraps both horizontally and vertically
+     */
+    public EnsembleBrain(int width, int height, int birthNumber, boolean wrapping) {
+        this.width = width;
+        this.height = height;
+        this.birthNumber = birthNumber;
+        this.wrapping = wrapping;
+        stride = width + 2;
+        int cells = stride * (height + 2);
+        on = new long[cells];
+        dying = new long[cells];
+        nextOn = new long[cells];
+        nextDying = new long[cells];
+    }
+
+    /**
+     * Advance every simulation by one step
+     */
+    public void update() {
+        if (wrapping) {
+            copyBorder();
+        }
+        for (int i = 1; i <= height; i++) {
+            int row = i * stride;
+            int up = row - stride;
+            int down = row + stride;
+            for (int j = 1; j <= width; j++) {
+                int k = row + j;
+                long c = on[k];
+                // Birth mask: lanes where the cell is OFF with exactly birthNumber ON neighbors
+                long born = BitBrain.countEquals(on[up + j - 1], on[up + j], on[up + j + 1],
+                                                 on[k - 1], on[k + 1],
+                                                 on[down + j - 1], on[down + j], on[down + j + 1], birthNumber);
+                // ON cells start dying and DYING cells turn off
+                nextOn[k] = born & ~c & ~dying[k];
+                nextDying[k] = c;
+            }
+        }
+
+        // Swap the buffers so the new generation becomes current
+        long[] temp = on;
+        on = nextOn;
+        nextOn = temp;
+        temp = dying;
+        dying = nextDying;
+        nextDying = temp;
+        stepCount++;
+    }
+
+    /**
+     * Advance every simulation by the given number of steps
+     * @param generations the number of steps
+     */
+    public void stepN(int generations) {
+        for (int k = 0; k < generations; k++) {
+            update();
+        }
+    }
+
+    // Copies the ON cells of the opposite edges into the border, corners included
+    private void copyBorder() {
+        System.arraycopy(on, height * stride, on, 0, stride);
+        System.arraycopy(on, stride, on, (height + 1) * stride, stride);
+        for (int i = 0; i <= height + 1; i++) {
+            int row = i * stride;
+            on[row] = on[row + width];
+            on[row + width + 1] = on[row + 1];
+        }
+    }
+
+    // Returns the position of a cell of the grid
+    private int index(int i, int j) {
+        return (i + 1) * stride + j + 1;
+    }
+
+    /**
+     * Returns the state of a given cell in one simulation
+     * @param lane the simulation, 0 to 63
+     * @param i the cell row
+     * @param j the cell column
+     * @return Brain.OFF, Brain.ON or Brain.DYING
+     */
+    public int getState(int lane, int i, int j) {
+        int k = index(i, j);
+        if ((on[k] >>> lane & 1) != 0) {
+            return Brain.ON;
+        } else if ((dying[k] >>> lane & 1) != 0) {
+            return Brain.DYING;
+        }
+        return Brain.OFF;
+    }
+
+    /**
+     * Sets the state of a given cell in one simulation
+     * @param lane the simulation, 0 to 63
+     * @param i the cell row
+     * @param j the cell column
+     * @param state Brain.OFF, Brain.ON or Brain.DYING
+     */
+    public void setState(int lane, int i, int j, int state) {
+        int k = index(i, j);
+        long bit = 1L << lane;
+        on[k] = (state == Brain.ON) ? on[k] | bit : on[k] & ~bit;
+        dying[k] = (state == Brain.DYING) ? dying[k] | bit : dying[k] & ~bit;
+    }
+
+    /**
+     * Reset all cells of every simulation to off state
+     */
+    public void clear() {
+        Arrays.fill(on, 0);
+        Arrays.fill(dying, 0);
+        stepCount = 0;
+    }
+
+    /**
+     * Fills every simulation with its own random cells
+     * @param random the source of the cells
+     * @param density the share of cells turned on, the rest are off
+     */
+    public void randomize(Random random, double density) {
+        clear();
+        long threshold = Math.round(density * (1 << DENSITY_BITS));
+        for (int i = 0; i < height; i++) {
+            for (int j = 0; j < width; j++) {
+                on[index(i, j)] = randomBits(random, threshold);
+            }
+        }
+    }
+
+    /* Returns a word whose bits are each set with probability threshold / 2^DENSITY_BITS.
+        The binary digits of the probability are read from the lowest: a one ORs in a random
+        word, which raises the chance of every bit by half the missing part, and a zero ANDs
+        one in, which halves it
+    */
+    private static long randomBits(Random random, long threshold) {
+        if (threshold >= 1 << DENSITY_BITS) {
+            return -1L;
+        }
+        long bits = 0;
+        for (int digit = 0; digit < DENSITY_BITS; digit++) {
+            bits = ((threshold >>> digit & 1) != 0) ? bits | random.nextLong() : bits & random.nextLong();
+        }
+        return bits;
+    }
+
+    /**
+     * Copies a grid into one simulation, the other simulations are not changed
+     * @param lane the simulation, 0 to 63
+     * @param brain an engine with the same size
+     */
+    public void loadLane(int lane, SimulationEngine brain) {
+        checkSize(brain);
+        for (int i = 0; i < height; i++) {
+            for (int j = 0; j < width; j++) {
+                setState(lane, i, j, brain.getState(i, j));
+            }
+        }
+    }
+
+    /**
+     * Copies one simulation into a normal engine, for example to show it or to keep simulating it on its own
+     * @param lane the simulation, 0 to 63
+     * @param brain an engine with the same size, its grid is replaced
+     */
+    public void copyLane(int lane, SimulationEngine brain) {
+        checkSize(brain);
+        brain.clear();
+        for (int i = 0; i < height; i++) {
+            for (int j = 0; j < width; j++) {
+                int state = getState(lane, i, j);
+                if (state != Brain.OFF) {
+                    brain.setState(i, j, state);
+                }
+            }
+        }
+        brain.setStepCount(stepCount);
+    }
+
+    // Makes sure an engine has the size of the simulations
+    private void checkSize(SimulationEngine brain) {
+        if (brain.getWidth() != width || brain.getHeight() != height) {
+            throw new IllegalArgumentException("Engine is " + brain.getWidth() + "x" + brain.getHeight()
+                    + ", the ensemble " + width + "x" + height);
+        }
+    }
+
+    /**
+     * Returns the lanes that can still change, those with an ON or DYING cell. With a birth
+     * number of 0 an empty grid turns on again, so every lane counts as alive, with any other
+     * the empty lanes stay empty forever
+     * @return a mask with bit k set if simulation k is alive
+     */
+    public long getLiveLanes() {
+        if (birthNumber == 0) {
+            return -1L;
+        }
+        long live = 0;
+        for (int i = 0; i < height; i++) {
+            int row = index(i, 0);
+            for (int j = 0; j < width; j++) {
+                live |= on[row + j] | dying[row + j];
+            }
+        }
+        return live;
+    }
+
+    /**
+     * Counts the cells with on status in every simulation
+     * @param counts receives the count of simulation k at position k
+     */
+    public void getOnCounts(int[] counts) {
+        countLanes(on, counts);
+    }
+
+    /**
+     * Counts the cells with dying status in every simulation
+     * @param counts receives the count of simulation k at position k
+     */
+    public void getDyingCounts(int[] counts) {
+        countLanes(dying, counts);
+    }
+
+    // Counts the set bits of every lane, visiting only the set bits
+    private void countLanes(long[] plane, int[] counts) {
+        Arrays.fill(counts, 0, LANES, 0);
+        for (int i = 0; i < height; i++) {
+            int row = index(i, 0);
+            for (int j = 0; j < width; j++) {
+                long bits = plane[row + j];
+                while (bits != 0) {
+                    counts[Long.numberOfTrailingZeros(bits)]++;
+                    bits &= bits - 1;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the number of cells with on status in one simulation
+     * @param lane the simulation, 0 to 63
+     * @return the number of on cells
+     */
+    public int getOnCount(int lane) {
+        return countLane(on, lane);
+    }
+
+    /**
+     * Returns the number of cells with dying status in one simulation
+     * @param lane the simulation, 0 to 63
+     * @return the number of dying cells
+     */
+    public int getDyingCount(int lane) {
+        return countLane(dying, lane);
+    }
+
+    /**
+     * Returns the number of cells with off status in one simulation
+     * @param lane the simulation, 0 to 63
+     * @return the number of off cells
+     */
+    public int getOffCount(int lane) {
+        return width * height - getOnCount(lane) - getDyingCount(lane);
+    }
+
+    // Counts the set bits of one lane
+    private int countLane(long[] plane, int lane) {
+        int count = 0;
+        for (int i = 0; i < height; i++) {
+            int row = index(i, 0);
+            for (int j = 0; j < width; j++) {
+                count += (int) (plane[row + j] >>> lane & 1);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the current simulation step, the same for every simulation
+     * @return the simulation step
+     */
+    public int getStepCount() {
+        return stepCount;
+    }
+
+    /**
+     * Returns the width of the grid
+     * @return the width of the grid
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Returns the height of the grid
+     * @return the height of the grid
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Returns the number of ON neighbors that turns an OFF cell on
+     * @return the birth number
+     */
+    public int getBirthNumber() {
+        return birthNumber;
+    }
+
+    /**
+     * Returns whether the grid wraps around both horizontally and vertically
+     * @return true if the grid wraps
+     */
+    public boolean isWrapping() {
+        return wrapping;
+    }
+}
@@ -17,13 +17,24 @@ import java.awt.image.BufferedImage;
 import java.beans.PropertyChangeListener;
 import java.io.File;
 import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.imageio.ImageIO;
 import javax.swing.AbstractAction;
 import javax.swing.Action;
+import javax.swing.JFileChooser;
+import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.KeyStroke;
+import javax.swing.ProgressMonitor;
+import javax.swing.SwingUtilities;
 import javax.swing.Timer;
 
 /**
@@ -36,6 +47,23 @@ public class GamePanel extends javax.swing.JPanel implements MouseListener {
 
     CardSwitcher switcher; // This is the parent panel
     Timer animTimer;
+    // Advances the engine while the simulation is running, null when stopped
+    SimulationThread simulation;
+    // Simulation step of the last frame drawn and time of the last status bar update
+    int drawnStep;
+    long statusTime;
+    // Time between two status bar updates while the simulation is running
+    static final long STATUS_NANOS = 250_000_000L;
+    // Patterns offered after Randomize in the pattern list
+    final PatternLibrary library = new PatternLibrary();
+    // Memory given to the recent generations kept for Step Back
+    static final long HISTORY_BYTES = 64L << 20;
+    // Recent generations and edits of the grid, stored while the simulation runs too
+    final RewindHistory history = new RewindHistory(HISTORY_BYTES, RewindHistory.DEFAULT_KEYFRAME_INTERVAL);
+    // Smallest width of an exported animation in pixels, small grids are drawn with larger cells
+    static final int EXPORT_WIDTH = 512;
+    // Longest wait for an export to finish its file when the program exits
+    private static final int SHUTDOWN_WAIT_SECONDS = 10;
     // Image img1 = Toolkit.getDefaultToolkit().getImage("yourFile.jpg");
     BufferedImage img1;
     //variables to control your animation elements
@@ -56,8 +84,8 @@ public class GamePanel extends javax.swing.JPanel implements MouseListener {
         addMouseListener(this);
         //tells us the panel that controls this one
         switcher = p;
-        //create and start a Timer for animation
-        animTimer = new Timer(10, new AnimTimerTick());
+        //create a Timer that redraws the newest generation about 60 times a second
+        animTimer = new Timer(16, new AnimTimerTick());
         //animTimer.start();
 
         //set up the key bindings
@@ -66,6 +94,11 @@ public class GamePanel extends javax.swing.JPanel implements MouseListener {
         // Create and initialise the grid with a random pattern
         gridPanel1.brain = new Brain(Integer.parseInt(widthValue.getText()), Integer.parseInt(heightValue.getText()), birthNumberSlider.getValue(), wrappingValue.isSelected());
         gridPanel1.brain.randomize();
+        recordHistory();
+        // Offer every pattern of the library
+        for (String name : library.getNames()) {
+            patternCombo.addItem(name);
+        }
         // Update all counters in the status bar
         updateStatus();
 
@@ -93,7 +126,11 @@ public class GamePanel extends javax.swing.JPanel implements MouseListener {
     public void setControls(boolean b){
         startStopButton.setEnabled(b);
         speedSlider.setEnabled(b);
+        turboValue.setEnabled(b);
+        turboRateValue.setEnabled(b);
+        cycleValue.setEnabled(b);
         stepButton.setEnabled(b);
+        stepBackButton.setEnabled(b);
         resetButton.setEnabled(b);
         toggleEditButton.setEnabled(b);
         patternCombo.setEnabled(b);
@@ -102,17 +139,166 @@ public class GamePanel extends javax.swing.JPanel implements MouseListener {
         widthValue.setEnabled(b);
         heightValue.setEnabled(b);
         applyButton.setEnabled(b);
+        saveButton.setEnabled(b);
+        loadButton.setEnabled(b);
+        exportButton.setEnabled(b);
         
     }
     
+    /**
+     * Stores the current grid in the rewind history, call it after every change made to the grid
+     */
+    public void recordHistory(){
+        history.record(gridPanel1.brain);
+    }
+    
     /**
      * Updates all counters in the status bar
      */
     public void updateStatus(){
-        onCellLabel.setText("On Cells: " + gridPanel1.brain.getOnCount());
-        offCellLabel.setText("Off Cells: " + gridPanel1.brain.getOffCount());
-        dyingCellLabel.setText("Dying Cells: " + gridPanel1.brain.getDyingCount());
-        stepLabel.setText("Simulation step: " + gridPanel1.brain.getStepCount());
+        SimulationEngine brain = gridPanel1.brain;
+        showCounts(brain.getOnCount(), brain.getOffCount(), brain.getDyingCount(), brain.getStepCount());
+    }
+    
+    // Shows the given counters in the status bar
+    private void showCounts(int on, int off, int dying, int step){
+        onCellLabel.setText("On Cells: " + on);
+        offCellLabel.setText("Off Cells: " + off);
+        dyingCellLabel.setText("Dying Cells: " + dying);
+        stepLabel.setText("Simulation step: " + step);
+    }
+    
+    /**
+     * Starts advancing the engine on the simulation thread
+     */
+    private void startSimulation(){
+        simulation = new SimulationThread(gridPanel1.brain, speedSlider.getValue(), this::simulationStopped);
+        if (cycleValue.isSelected()) {
+            simulation.setCycleDetector(new CycleDetector());
+        }
+        simulation.setHistory(history);
+        applySpeed();
+        gridPanel1.setSnapshot(simulation.latest());
+        drawnStep = -1;
+        statusTime = 0;
+        simulation.start();
+        animTimer.start();
+    }
+    
+    /**
+     * Steps a copy of the grid on a thread of its own and writes every generation to an animation,
+     * a progress dialog shows how far it got and can cancel it
+     * @param file the animation, a GIF if it ends with .gif and PNG files otherwise
+     * @param generations the number of generations after the current one
+     */
+    private void startExport(Path file, int generations){
+        // The copy uses the fastest engine, the grid stays free for the user
+        SimulationEngine brain = gridPanel1.brain;
+        SimulationEngine copy = EngineType.BITPLANE.create(brain.getWidth(), brain.getHeight(), brain.getBirthNumber(), brain.isWrapping());
+        for (int i = 0; i < brain.getHeight(); i++) {
+            for (int j = 0; j < brain.getWidth(); j++) {
+                if (brain.getState(i, j) != Brain.OFF) {
+                    copy.setState(i, j, brain.getState(i, j));
+                }
+            }
+        }
+        copy.setStepCount(brain.getStepCount());
+        int scale = Math.max(EXPORT_WIDTH / brain.getWidth(), 1);
+        int delay = speedSlider.getValue();
+        ProgressMonitor monitor = new ProgressMonitor(this, "Exporting " + file.getFileName(), null, 0, generations);
+        AtomicBoolean cancelled = new AtomicBoolean();
+        CountDownLatch finished = new CountDownLatch(1);
+        // Closing the window exits the program, stop the export first so the file gets its end
+        Thread shutdown = new Thread(() -> {
+            cancelled.set(true);
+            try {
+                finished.await(SHUTDOWN_WAIT_SECONDS, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        Runtime.getRuntime().addShutdownHook(shutdown);
+
+        Thread thread = new Thread(() -> {
+            String error = null;
+            try (AnimationExporter exporter = new AnimationExporter(file, copy.getWidth(), copy.getHeight(), scale, delay)) {
+                exporter.writeFrame(copy);
+                for (int k = 1; k <= generations && !cancelled.get(); k++) {
+                    copy.update();
+                    exporter.writeFrame(copy);
+                    // The monitor belongs to the Event Dispatch Thread, tell it about every percent done
+                    if (k % Math.max(generations / 100, 1) == 0) {
+                        int done = k;
+                        SwingUtilities.invokeLater(() -> {
+                            monitor.setProgress(done);
+                            cancelled.compareAndSet(false, monitor.isCanceled());
+                        });
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                error = (e.getMessage() != null) ? e.getMessage() : e.toString();
+            } finally {
+                finished.countDown();
+                try {
+                    Runtime.getRuntime().removeShutdownHook(shutdown);
+                } catch (IllegalStateException e) {
+                    // The program is exiting and the hook is waiting for this thread
+                }
+                String message = error;
+                SwingUtilities.invokeLater(() -> {
+                    monitor.close();
+                    if (message != null) {
+                        JOptionPane.showMessageDialog(this, "Could not export the animation: " + message);
+                    }
+                });
+            }
+        }, "Export");
+        thread.setDaemon(true);
+        thread.start();
+    }
+    
+    /**
+     * Passes the speed slider or, in turbo mode, the target rate to the simulation thread
+     */
+    private void applySpeed(){
+        if (simulation == null) {
+            return;
+        }
+        if (turboValue.isSelected()) {
+            try {
+                simulation.setTargetRate(Double.parseDouble(turboRateValue.getText()));
+            } catch (NumberFormatException e) {
+                // Keep the previous rate until the value is a number
+            }
+        } else {
+            simulation.setDelay(speedSlider.getValue());
+        }
+    }
+    
+    /**
+     * Asks the simulation thread to stop, the controls come back once it has
+     */
+    private void stopSimulation(){
+        if (simulation != null) {
+            simulation.stop();
+            startStopButton.setEnabled(false);
+        }
+    }
+    
+    // Called on the Event Dispatch Thread once the simulation thread has finished
+    private void simulationStopped(){
+        animTimer.stop();
+        CycleDetector detector = simulation.getCycleDetector();
+        simulation = null;
+        // The engine belongs to the Event Dispatch Thread again
+        gridPanel1.setSnapshot(null);
+        updateStatus();
+        if (detector != null && detector.getStatus() != CycleDetector.Status.RUNNING) {
+            // Tell the user why the simulation stopped by itself
+            stepLabel.setText(stepLabel.getText() + " (" + detector.describe() + ")");
+        }
+        startStopButton.setText("Start");
+        setControls(true);
     }
 
     /**
@@ -129,6 +315,7 @@ public class GamePanel extends javax.swing.JPanel implements MouseListener {
         controlPanel = new javax.swing.JPanel();
         startStopButton = new javax.swing.JButton();
         stepButton = new javax.swing.JButton();
+        stepBackButton = new javax.swing.JButton();
         resetButton = new javax.swing.JButton();
         toggleEditButton = new javax.swing.JToggleButton();
         jLabel1 = new javax.swing.JLabel();
@@ -144,12 +331,19 @@ public class GamePanel extends javax.swing.JPanel implements MouseListener {
         jLabel5 = new javax.swing.JLabel();
         wrappingValue = new javax.swing.JCheckBox();
         applyButton = new javax.swing.JButton();
+        saveButton = new javax.swing.JButton();
+        loadButton = new javax.swing.JButton();
+        exportButton = new javax.swing.JButton();
         onCellLabel = new javax.swing.JLabel();
         offCellLabel = new javax.swing.JLabel();
         dyingCellLabel = new javax.swing.JLabel();
         stepLabel = new javax.swing.JLabel();
         patternCombo = new javax.swing.JComboBox<>();
         jLabel6 = new javax.swing.JLabel();
+        turboValue = new javax.swing.JCheckBox();
+        jLabel7 = new javax.swing.JLabel();
+        turboRateValue = new javax.swing.JTextField();
+        cycleValue = new javax.swing.JCheckBox();
 
         label1.setText("label1");
 
@@ -191,6 +385,13 @@ public class GamePanel extends javax.swing.JPanel implements MouseListener {
             }
         });
 
+        stepBackButton.setText("Step Back");
+        stepBackButton.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                stepBackButtonActionPerformed(evt);
+            }
+        });
+
         resetButton.setText("Reset");
         resetButton.addActionListener(new java.awt.event.ActionListener() {
             public void actionPerformed(java.awt.event.ActionEvent evt) {
@@ -222,8 +423,8 @@ public class GamePanel extends javax.swing.JPanel implements MouseListener {
 
         birthNumberValue.setText("2");
 
-        birthNumberSlider.setMaximum(7);
-        birthNumberSlider.setMinimum(2);
+        birthNumberSlider.setMaximum(8);
+        birthNumberSlider.setMinimum(0);
         birthNumberSlider.setValue(2);
         birthNumberSlider.addChangeListener(new javax.swing.event.ChangeListener() {
             public void stateChanged(javax.swing.event.ChangeEvent evt) {
@@ -263,6 +464,27 @@ public class GamePanel extends javax.swing.JPanel implements MouseListener {
             }
         });
 
+        saveButton.setText("Save");
+        saveButton.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                saveButtonActionPerformed(evt);
+            }
+        });
+
+        loadButton.setText("Load");
+        loadButton.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                loadButtonActionPerformed(evt);
+            }
+        });
+
+        exportButton.setText("Export");
+        exportButton.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                exportButtonActionPerformed(evt);
+            }
+        });
+
         onCellLabel.setText("On Cells:");
 
         offCellLabel.setText("Off Cells:");
@@ -271,7 +493,7 @@ public class GamePanel extends javax.swing.JPanel implements MouseListener {
 
         stepLabel.setText("Simulation Step:");
 
-        patternCombo.setModel(new javax.swing.DefaultComboBoxModel<>(new String[] { "Randomize", "Oscillator", "Linear", "Diagonal", "Expanding" }));
+        patternCombo.setModel(new javax.swing.DefaultComboBoxModel<>(new String[] { "Randomize" }));
         patternCombo.addActionListener(new java.awt.event.ActionListener() {
             public void actionPerformed(java.awt.event.ActionEvent evt) {
                 patternComboActionPerformed(evt);
@@ -280,6 +502,25 @@ public class GamePanel extends javax.swing.JPanel implements MouseListener {
 
         jLabel6.setText("Set Pattern:");
 
+        turboValue.setText("Turbo");
+        turboValue.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                turboValueActionPerformed(evt);
+            }
+        });
+
+        jLabel7.setText("Generations/sec:");
+
+        turboRateValue.setText("10000");
+        turboRateValue.setPreferredSize(new java.awt.Dimension(100, 23));
+        turboRateValue.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                turboRateValueActionPerformed(evt);
+            }
+        });
+
+        cycleValue.setText("Stop on cycle");
+
         javax.swing.GroupLayout controlPanelLayout = new javax.swing.GroupLayout(controlPanel);
         controlPanel.setLayout(controlPanelLayout);
         controlPanelLayout.setHorizontalGroup(
@@ -292,13 +533,23 @@ public class GamePanel extends javax.swing.JPanel implements MouseListener {
                             .addGroup(controlPanelLayout.createSequentialGroup()
                                 .addComponent(jLabel5)
                                 .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
-                                .addComponent(wrappingValue))
+                                .addComponent(wrappingValue)
+                                .addGap(18, 18, 18)
+                                .addComponent(turboValue)
+                                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                                .addComponent(jLabel7)
+                                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                                .addComponent(turboRateValue, javax.swing.GroupLayout.PREFERRED_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.PREFERRED_SIZE)
+                                .addGap(18, 18, 18)
+                                .addComponent(cycleValue))
                             .addComponent(onCellLabel)
                             .addGroup(controlPanelLayout.createSequentialGroup()
                                 .addComponent(startStopButton)
                                 .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
                                 .addComponent(stepButton)
                                 .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                                .addComponent(stepBackButton)
+                                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
                                 .addComponent(resetButton)
                                 .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
                                 .addComponent(toggleEditButton)
@@ -320,6 +571,12 @@ public class GamePanel extends javax.swing.JPanel implements MouseListener {
                                 .addGroup(controlPanelLayout.createSequentialGroup()
                                     .addComponent(heightValue, javax.swing.GroupLayout.PREFERRED_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.PREFERRED_SIZE)
                                     .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED, javax.swing.GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE)
+                                    .addComponent(saveButton)
+                                    .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                                    .addComponent(loadButton)
+                                    .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                                    .addComponent(exportButton)
+                                    .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
                                     .addComponent(applyButton)
                                     .addGap(11, 11, 11))
                                 .addGroup(controlPanelLayout.createSequentialGroup()
@@ -350,6 +607,7 @@ public class GamePanel extends javax.swing.JPanel implements MouseListener {
                 .addGroup(controlPanelLayout.createParallelGroup(javax.swing.GroupLayout.Alignment.BASELINE)
                     .addComponent(startStopButton)
                     .addComponent(stepButton)
+                    .addComponent(stepBackButton)
                     .addComponent(resetButton)
                     .addComponent(toggleEditButton)
                     .addComponent(jLabel6)
@@ -367,7 +625,11 @@ public class GamePanel extends javax.swing.JPanel implements MouseListener {
                 .addGap(1, 1, 1)
                 .addGroup(controlPanelLayout.createParallelGroup(javax.swing.GroupLayout.Alignment.BASELINE)
                     .addComponent(jLabel5)
-                    .addComponent(wrappingValue))
+                    .addComponent(wrappingValue)
+                    .addComponent(turboValue)
+                    .addComponent(jLabel7)
+                    .addComponent(turboRateValue, javax.swing.GroupLayout.PREFERRED_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.PREFERRED_SIZE)
+                    .addComponent(cycleValue))
                 .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
                 .addGroup(controlPanelLayout.createParallelGroup(javax.swing.GroupLayout.Alignment.BASELINE)
                     .addComponent(jLabel3)
@@ -376,6 +638,9 @@ public class GamePanel extends javax.swing.JPanel implements MouseListener {
                 .addGroup(controlPanelLayout.createParallelGroup(javax.swing.GroupLayout.Alignment.BASELINE)
                     .addComponent(jLabel4)
                     .addComponent(heightValue, javax.swing.GroupLayout.PREFERRED_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.PREFERRED_SIZE)
+                    .addComponent(saveButton)
+                    .addComponent(loadButton)
+                    .addComponent(exportButton)
                     .addComponent(applyButton))
                 .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
                 .addGroup(controlPanelLayout.createParallelGroup(javax.swing.GroupLayout.Alignment.BASELINE)
@@ -394,15 +659,94 @@ public class GamePanel extends javax.swing.JPanel implements MouseListener {
     }//GEN-LAST:event_formComponentShown
 
     private void applyButtonActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_applyButtonActionPerformed
-        // Read the slider value and update the timer
-        animTimer.setDelay(speedSlider.getValue());
-        // Recreate the model taking into account all parameter values
-        gridPanel1.brain = new Brain(Integer.parseInt(widthValue.getText()), Integer.parseInt(heightValue.getText()), birthNumberSlider.getValue(), wrappingValue.isSelected());
+        // Recreate the model taking into account all parameter values, with the engine already in use
+        gridPanel1.brain = EngineType.of(gridPanel1.brain).create(Integer.parseInt(widthValue.getText()), Integer.parseInt(heightValue.getText()), birthNumberSlider.getValue(), wrappingValue.isSelected());
         gridPanel1.brain.randomize();
+        // A new grid starts a new history
+        history.clear();
+        recordHistory();
         updateStatus();
-        gridPanel1.repaint();
+        gridPanel1.refresh();
     }//GEN-LAST:event_applyButtonActionPerformed
 
+    private void saveButtonActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_saveButtonActionPerformed
+        // Write the current grid to a file chosen by the user, as a pattern if it ends with .rle
+        JFileChooser chooser = new JFileChooser();
+        if (chooser.showSaveDialog(this) == JFileChooser.APPROVE_OPTION) {
+            File file = chooser.getSelectedFile();
+            try {
+                if (file.getName().toLowerCase().endsWith(".rle")) {
+                    try (Writer out = Files.newBufferedWriter(file.toPath())) {
+                        RleFormat.save(gridPanel1.brain, out, file.getName().substring(0, file.getName().length() - 4));
+                    }
+                } else {
+                    SnapshotFile.save(gridPanel1.brain, file.toPath(), SnapshotFile.Compression.RLE);
+                }
+            } catch (IOException e) {
+                JOptionPane.showMessageDialog(this, "Could not save the grid: " + e.getMessage());
+            }
+        }
+    }//GEN-LAST:event_saveButtonActionPerformed
+
+    private void loadButtonActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_loadButtonActionPerformed
+        /* Replace the model with a snapshot file chosen by the user, or place
+           the pattern of an .rle file in the current grid
+        */
+        JFileChooser chooser = new JFileChooser();
+        if (chooser.showOpenDialog(this) == JFileChooser.APPROVE_OPTION) {
+            File file = chooser.getSelectedFile();
+            try {
+                if (file.getName().toLowerCase().endsWith(".rle")) {
+                    // A pattern with another rule replaces the engine with one following it
+                    try (Reader in = Files.newBufferedReader(file.toPath())) {
+                        gridPanel1.brain = RleFormat.loadWithRule(in, gridPanel1.brain);
+                    }
+                } else {
+                    // The snapshot keeps running on the engine the grid uses now
+                    gridPanel1.brain = SnapshotFile.load(file.toPath(), EngineType.of(gridPanel1.brain));
+                    history.clear();
+                }
+            } catch (IOException e) {
+                JOptionPane.showMessageDialog(this, "Could not load the grid: " + e.getMessage());
+                return;
+            }
+            // Show the parameters of the loaded grid
+            SimulationEngine brain = gridPanel1.brain;
+            widthValue.setText(String.valueOf(brain.getWidth()));
+            heightValue.setText(String.valueOf(brain.getHeight()));
+            birthNumberSlider.setValue(brain.getBirthNumber());
+            wrappingValue.setSelected(brain.isWrapping());
+            recordHistory();
+            updateStatus();
+            gridPanel1.refresh();
+        }
+    }//GEN-LAST:event_loadButtonActionPerformed
+
+    private void exportButtonActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_exportButtonActionPerformed
+        /* Write the coming generations to an animated GIF, or to numbered PNG
+           files for any other name, without stopping the user interface
+        */
+        JFileChooser chooser = new JFileChooser();
+        if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        String value = JOptionPane.showInputDialog(this, "Number of generations to export:", "100");
+        if (value == null) {
+            return;
+        }
+        int generations;
+        try {
+            generations = Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            generations = 0;
+        }
+        if (generations < 1) {
+            JOptionPane.showMessageDialog(this, "The number of generations must be a positive number");
+            return;
+        }
+        startExport(chooser.getSelectedFile().toPath(), generations);
+    }//GEN-LAST:event_exportButtonActionPerformed
+
     private void wrappingValueActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_wrappingValueActionPerformed
         // TODO add your handling code here:
     }//GEN-LAST:event_wrappingValueActionPerformed
@@ -419,7 +763,7 @@ public class GamePanel extends javax.swing.JPanel implements MouseListener {
     private void speedSliderStateChanged(javax.swing.event.ChangeEvent evt) {//GEN-FIRST:event_speedSliderStateChanged
         // Display numeric value for speed slider and update the timer        
         speedValue.setText("" + speedSlider.getValue());
-        animTimer.setDelay(speedSlider.getValue());
+        applySpeed();
     }//GEN-LAST:event_speedSliderStateChanged
 
     private void toggleEditButtonActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_toggleEditButtonActionPerformed
@@ -430,6 +774,8 @@ public class GamePanel extends javax.swing.JPanel implements MouseListener {
             setControls(false);
             // Enable just the edit button
             toggleEditButton.setEnabled(true);
+            // Step Back undoes the clicks
+            stepBackButton.setEnabled(true);
             gridPanel1.setEditMode(true);
         } else {
             setControls(true);
@@ -440,67 +786,83 @@ public class GamePanel extends javax.swing.JPanel implements MouseListener {
     private void resetButtonActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_resetButtonActionPerformed
         // Clear the grid and update the status bar
         gridPanel1.brain.clear();
+        recordHistory();
         updateStatus();
-        gridPanel1.repaint();
+        gridPanel1.refresh();
     }//GEN-LAST:event_resetButtonActionPerformed
 
     private void stepButtonActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_stepButtonActionPerformed
         // Run a single simulation step
         gridPanel1.brain.update();
+        recordHistory();
         updateStatus();
-        gridPanel1.repaint();
+        gridPanel1.refresh();
     }//GEN-LAST:event_stepButtonActionPerformed
 
+    private void stepBackButtonActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_stepBackButtonActionPerformed
+        // Go back to the previous generation, or undo the last edit, while the history still holds it
+        if (history.stepBack(gridPanel1.brain)) {
+            updateStatus();
+            gridPanel1.refresh();
+        }
+    }//GEN-LAST:event_stepBackButtonActionPerformed
+
     private void startStopButtonActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_startStopButtonActionPerformed
         /* While the simulation is running disable unnecessary buttons.
            Button text switches between start/stop 
         */
-        if (animTimer.isRunning()){
-            animTimer.stop();
-            startStopButton.setText("Start");
-            setControls(true);
+        if (simulation != null){
+            stopSimulation();
         } else {
-            animTimer.setDelay(speedSlider.getValue());
-            animTimer.start();
+            startSimulation();
             startStopButton.setText("Stop");
             setControls(false);
             speedSlider.setEnabled(true);
+            turboValue.setEnabled(true);
+            turboRateValue.setEnabled(true);
             startStopButton.setEnabled(true);
         }
     }//GEN-LAST:event_startStopButtonActionPerformed
 
     private void patternComboActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_patternComboActionPerformed
-        // Initialise the grid with the selected pattern
-        switch (patternCombo.getSelectedIndex()) {
-            case 0:
-                gridPanel1.brain.randomize();
-                break;
-            case 1:
-                gridPanel1.brain.createOscillator();
-                break;
-            case 2:
-                gridPanel1.brain.createLinear();
-                break;
-            case 3:
-                gridPanel1.brain.createDiagonal();
-                break;
-            case 4:
-                gridPanel1.brain.createExpanding();
-                break;
+        // Initialise the grid with the selected pattern, the library patterns follow Randomize
+        int index = patternCombo.getSelectedIndex();
+        if (index == 0) {
+            gridPanel1.brain.randomize();
+        } else {
+            try {
+                gridPanel1.brain = library.loadWithRule(index - 1, gridPanel1.brain);
+                birthNumberSlider.setValue(gridPanel1.brain.getBirthNumber());
+            } catch (IOException e) {
+                JOptionPane.showMessageDialog(this, "Could not load the pattern: " + e.getMessage());
+            }
         }
         
         // Update accordingly
+        recordHistory();
         updateStatus();
-        gridPanel1.repaint(); 
+        gridPanel1.refresh(); 
     }//GEN-LAST:event_patternComboActionPerformed
 
+    private void turboValueActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_turboValueActionPerformed
+        // Switch a running simulation between the speed slider and the target rate
+        applySpeed();
+    }//GEN-LAST:event_turboValueActionPerformed
+
+    private void turboRateValueActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_turboRateValueActionPerformed
+        // Apply a new target rate when enter is pressed
+        applySpeed();
+    }//GEN-LAST:event_turboRateValueActionPerformed
+
 
     // Variables declaration - do not modify//GEN-BEGIN:variables
     private javax.swing.JButton applyButton;
     private javax.swing.JSlider birthNumberSlider;
     private javax.swing.JLabel birthNumberValue;
     private javax.swing.JPanel controlPanel;
+    private javax.swing.JCheckBox cycleValue;
     private javax.swing.JLabel dyingCellLabel;
+    private javax.swing.JButton exportButton;
     private automatastarter.GridPanel gridPanel1;
     private javax.swing.JTextField heightValue;
     private javax.swing.JLabel jLabel1;
@@ -509,17 +871,23 @@ public class GamePanel extends javax.swing.JPanel implements MouseListener {
     private javax.swing.JLabel jLabel4;
     private javax.swing.JLabel jLabel5;
     private javax.swing.JLabel jLabel6;
+    private javax.swing.JLabel jLabel7;
     private java.awt.Label label1;
+    private javax.swing.JButton loadButton;
     private javax.swing.JLabel offCellLabel;
     private javax.swing.JLabel onCellLabel;
     private javax.swing.JComboBox<String> patternCombo;
     private javax.swing.JButton resetButton;
+    private javax.swing.JButton saveButton;
     private javax.swing.JSlider speedSlider;
     private javax.swing.JLabel speedValue;
     private javax.swing.JButton startStopButton;
+    private javax.swing.JButton stepBackButton;
     private javax.swing.JButton stepButton;
     private javax.swing.JLabel stepLabel;
     private javax.swing.JToggleButton toggleEditButton;
+    private javax.swing.JTextField turboRateValue;
+    private javax.swing.JCheckBox turboValue;
     private javax.swing.JTextField widthValue;
     private javax.swing.JCheckBox wrappingValue;
     // End of variables declaration//GEN-END:variables
@@ -588,7 +956,7 @@ public class GamePanel extends javax.swing.JPanel implements MouseListener {
             System.out.println("llll" + key);
             switch(key){
                 case "d": x+=2; break;
-                case "x": animTimer.stop(); switcher.switchToCard(EndPanel.CARD_NAME); break;
+                case "x": stopSimulation(); switcher.switchToCard(EndPanel.CARD_NAME); break;
             }
             if (key.equals("d")) {
                 x = x + 2;
@@ -606,10 +974,24 @@ public class GamePanel extends javax.swing.JPanel implements MouseListener {
         
         public void actionPerformed(ActionEvent ae) {
             //the stuff we want to change every clock tick
-            gridPanel1.brain.update();
-            updateStatus();
-            //force redraw
-            repaint();
+            if (simulation == null) {
+                return;
+            }
+            // Draw the newest completed generation, the engine may already be on the next one
+            Snapshot snapshot = simulation.latest();
+            if (snapshot.getStepCount() == drawnStep) {
+                // Nothing new since the last frame, skip it
+                return;
+            }
+            drawnStep = snapshot.getStepCount();
+            // Only the tiles that changed since the last frame are repainted
+            gridPanel1.setSnapshot(snapshot);
+            // Updating the labels every frame is wasted work, a few times a second is enough to read them
+            long now = System.nanoTime();
+            if (now - statusTime >= STATUS_NANOS) {
+                statusTime = now;
+                showCounts(snapshot.getOnCount(), snapshot.getOffCount(), snapshot.getDyingCount(), snapshot.getStepCount());
+            }
         }
     }
 }
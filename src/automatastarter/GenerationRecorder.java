@@ -0,0 +1,237 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package automatastarter;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Records every generation of a run to a file so it can be replayed later
+ * without simulating it again, see GenerationReplay.
+ * After a header the file holds one record per generation: a keyframe with
+ * every cell every few generations, and in between a delta holding only the
+ * cells that changed. Both are variable length numbers, a keyframe is runs of
+ * equal states and a delta is the gap to the next changed cell followed by a
+ * run of changed cells that all became the same state.
+ * An index file next to the recording lists the step and file position of
+ * every keyframe, so a replay can jump close to any generation
+ * @author paul
+ */
+public class GenerationRecorder implements Closeable {
+    // "BREC" at the start of a recording and "BIDX" at the start of its index
+    static final int MAGIC = 0x42524543;
+    static final int INDEX_MAGIC = 0x42494458;
+    static final short VERSION = 1;
+    // Record kinds
+    static final int KEYFRAME = 0;
+    static final int DELTA = 1;
+    // Generations between two keyframes by default
+    public static final int DEFAULT_KEYFRAME_INTERVAL = 1000;
+    // Size of the write buffers
+    private static final int CHUNK = 1 << 16;
+
+    // Initialise variables
+    private final FileChannel channel;
+    private final FileChannel index;
+    private final ByteBuffer out = ByteBuffer.allocateDirect(CHUNK);
+    private final ByteBuffer indexOut = ByteBuffer.allocate(CHUNK);
+    private final int keyframeInterval;
+    // Generation recorded last and the one being compared with it
+    private byte[] previous;
+    private byte[] current;
+    private int previousStep;
+    // Record being encoded, written once its length is known
+    private byte[] payload = new byte[CHUNK];
+    private int length;
+    // File position of the end of the buffered bytes
+    private long position;
+
+    /**
+     * Constructor, creates the recording and its index and records the current generation as a keyframe
+     * @param file the recording, the index is written to the same name with ".idx" added
+     * @param brain the engine to record
+     * @param keyframeInterval the number of generations between two keyframes
+     * @throws IOException if the files cannot be written
+     */
+    public GenerationRecorder(Path file, SimulationEngine brain, int keyframeInterval) throws IOException {
+        this.keyframeInterval = Math.max(keyframeInterval, 1);
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        index = FileChannel.open(indexFile(file), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        previous = new byte[brain.getWidth() * brain.getHeight()];
+        current = new byte[previous.length];
+
+        out.putInt(MAGIC);
+        out.putShort(VERSION);
+        out.put((byte) (brain.isWrapping() ? 1 : 0));
+        out.put((byte) 0);
+        out.putInt(brain.getWidth());
+        out.putInt(brain.getHeight());
+        out.putInt(brain.getBirthNumber());
+        out.putInt(this.keyframeInterval);
+        position = out.position();
+        indexOut.putInt(INDEX_MAGIC);
+
+        brain.copyStates(previous);
+        previousStep = brain.getStepCount();
+        writeKeyframe(previous, previousStep);
+    }
+
+    /**
+     * Returns the index file of a recording
+     * @param file the recording
+     * @return the index file
+     */
+    public static Path indexFile(Path file) {
+        return Paths.get(file.toString() + ".idx");
+    }
+
+    /**
+     * Records the current generation of the engine, call it after every update
+     * @param brain the engine given to the constructor
+     * @throws IOException if the recording cannot be written
+     */
+    public void record(SimulationEngine brain) throws IOException {
+        int step = brain.getStepCount();
+        brain.copyStates(current);
+        // A jump in the steps cannot be replayed from deltas, start again from a keyframe
+        if (step != previousStep + 1 || step % keyframeInterval == 0) {
+            writeKeyframe(current, step);
+        } else {
+            writeDelta(step);
+        }
+        byte[] temp = previous;
+        previous = current;
+        current = temp;
+        previousStep = step;
+    }
+
+    // Writes all cells as runs of equal states and adds the keyframe to the index
+    private void writeKeyframe(byte[] states, int step) throws IOException {
+        length = 0;
+        int state = states[0];
+        int run = 0;
+        for (byte next : states) {
+            if (next != state) {
+                putVarint((long) run << 2 | state);
+                state = next;
+                run = 0;
+            }
+            run++;
+        }
+        putVarint((long) run << 2 | state);
+
+        if (indexOut.remaining() < 16) {
+            flush(index, indexOut);
+        }
+        indexOut.putLong(step);
+        indexOut.putLong(position);
+        writeRecord(KEYFRAME, step);
+    }
+
+    // Writes the cells that differ from the previous generation
+    private void writeDelta(int step) throws IOException {
+        length = 0;
+        int last = 0;
+        int k = 0;
+        int cells = current.length;
+        while (k < cells) {
+            if (current[k] == previous[k]) {
+                k++;
+                continue;
+            }
+            // A run of changed cells that all became the same state
+            int state = current[k];
+            int end = k + 1;
+            while (end < cells && current[end] != previous[end] && current[end] == state) {
+                end++;
+            }
+            putVarint(k - last);
+            putVarint((long) (end - k) << 2 | state);
+            last = end;
+            k = end;
+        }
+        writeRecord(DELTA, step);
+    }
+
+    // Writes the kind, step and length of a record followed by the encoded payload
+    private void writeRecord(int kind, int step) throws IOException {
+        if (out.remaining() < 32) {
+            flush(channel, out);
+        }
+        int start = out.position();
+        out.put((byte) kind);
+        putVarint(out, step);
+        putVarint(out, length);
+        position += out.position() - start;
+        int offset = 0;
+        while (offset < length) {
+            if (!out.hasRemaining()) {
+                flush(channel, out);
+            }
+            int size = Math.min(out.remaining(), length - offset);
+            out.put(payload, offset, size);
+            offset += size;
+        }
+        position += length;
+    }
+
+    // Adds a variable length number to the payload, growing it if needed
+    private void putVarint(long value) {
+        if (length + 10 > payload.length) {
+            payload = Arrays.copyOf(payload, payload.length * 2);
+        }
+        while ((value & ~0x7FL) != 0) {
+            payload[length++] = (byte) (value & 0x7F | 0x80);
+            value >>>= 7;
+        }
+        payload[length++] = (byte) value;
+    }
+
+    // Adds a variable length number to a buffer with room for it
+    private static void putVarint(ByteBuffer buffer, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) (value & 0x7F | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    // Writes the buffered bytes to a file
+    private static void flush(FileChannel target, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            target.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Returns the size of the recording so far
+     * @return the number of bytes recorded
+     */
+    public long getBytesWritten() {
+        return position;
+    }
+
+    /**
+     * Writes what is still buffered and closes both files
+     * @throws IOException if the files cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        try (FileChannel recording = channel; FileChannel keyframes = index) {
+            flush(recording, out);
+            flush(keyframes, indexOut);
+        }
+    }
+}
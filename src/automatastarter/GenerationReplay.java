@@ -0,0 +1,329 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package automatastarter;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Plays back a run written by GenerationRecorder. Seeking to a generation
+ * reads the nearest keyframe before it from the index and applies the deltas
+ * up to it, so any generation of a long run can be reached quickly while only
+ * one generation is ever held in memory
+ * @author paul
+ */
+public class GenerationReplay implements Closeable {
+    // Size of the header of a recording and of a keyframe entry in the index
+    private static final int HEADER = 4 + 2 + 1 + 1 + 4 * 4;
+    private static final int ENTRY = 16;
+    // Size of the read buffer
+    private static final int CHUNK = 1 << 16;
+
+    // Initialise variables
+    private final FileChannel channel;
+    private final ByteBuffer in = ByteBuffer.allocateDirect(CHUNK);
+    // File position of the first byte after the buffer
+    private long position;
+    // Keyframe entries of the index, step and file position
+    private final MappedByteBuffer keyframes;
+    private final int keyframeCount;
+    private final int width;
+    private final int height;
+    private final int birthNumber;
+    private final boolean wrapping;
+    // The generation currently replayed
+    private final byte[] states;
+    private final int[] counts = new int[3];
+    private int step;
+    private boolean loaded;
+
+    /**
+     * Constructor, opens a recording and its index
+     * @param file the recording
+     * @throws IOException if the files cannot be read or are not a recording
+     */
+    public GenerationReplay(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+        try (FileChannel index = FileChannel.open(GenerationRecorder.indexFile(file), StandardOpenOption.READ)) {
+            keyframes = index.map(FileChannel.MapMode.READ_ONLY, 0, index.size());
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        if (keyframes.capacity() < 4 || keyframes.getInt(0) != GenerationRecorder.INDEX_MAGIC) {
+            close();
+            throw new IOException("Not a recording index: " + GenerationRecorder.indexFile(file));
+        }
+        keyframeCount = (keyframes.capacity() - 4) / ENTRY;
+
+        fill(0);
+        if (in.remaining() < HEADER || in.getInt() != GenerationRecorder.MAGIC) {
+            close();
+            throw new IOException("Not a recording: " + file);
+        }
+        short version = in.getShort();
+        if (version != GenerationRecorder.VERSION) {
+            close();
+            throw new IOException("Unsupported recording version " + version);
+        }
+        wrapping = (in.get() & 1) != 0;
+        in.get();
+        width = in.getInt();
+        height = in.getInt();
+        birthNumber = in.getInt();
+        in.getInt();
+        if (width < 1 || height < 1 || keyframeCount == 0) {
+            close();
+            throw new IOException("Damaged recording: " + file);
+        }
+        states = new byte[width * height];
+    }
+
+    /**
+     * Moves to a generation, or to the first recorded one after it if the run jumped over it
+     * @param target the simulation step to replay
+     * @throws IOException if the recording does not reach the step or is damaged
+     */
+    public void seek(int target) throws IOException {
+        // Find the last keyframe at or before the target
+        int low = 0;
+        int high = keyframeCount - 1;
+        if (target < keyframeStep(0)) {
+            throw new IOException("Recording starts at step " + keyframeStep(0));
+        }
+        while (low < high) {
+            int middle = (low + high + 1) / 2;
+            if (keyframeStep(middle) <= target) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        // Deltas from the current generation are cheaper if it lies between the keyframe and the target
+        if (!loaded || step > target || step < keyframeStep(low)) {
+            fill(keyframes.getLong(4 + low * ENTRY + 8));
+            if (!next()) {
+                throw new IOException("Damaged recording, missing keyframe");
+            }
+        }
+        while (step < target) {
+            if (!next()) {
+                throw new IOException("Recording ends at step " + step);
+            }
+        }
+    }
+
+    /**
+     * Moves to the next recorded generation
+     * @return false if the recording has ended
+     * @throws IOException if the recording is damaged
+     */
+    public boolean next() throws IOException {
+        if (!ensure(1)) {
+            return false;
+        }
+        int kind = in.get();
+        int recordStep = (int) readVarint();
+        long length = readVarint();
+        if (kind == GenerationRecorder.KEYFRAME) {
+            readKeyframe();
+        } else if (kind == GenerationRecorder.DELTA && loaded) {
+            readDelta(length);
+        } else {
+            throw new IOException("Damaged recording at step " + recordStep);
+        }
+        step = recordStep;
+        loaded = true;
+        return true;
+    }
+
+    // Reads the runs of a keyframe into the states
+    private void readKeyframe() throws IOException {
+        counts[Brain.OFF] = 0;
+        counts[Brain.ON] = 0;
+        counts[Brain.DYING] = 0;
+        int cell = 0;
+        while (cell < states.length) {
+            long value = readVarint();
+            int state = (int) (value & 3);
+            long run = value >>> 2;
+            if (state > Brain.DYING || run > states.length - cell) {
+                throw new IOException("Damaged keyframe");
+            }
+            Arrays.fill(states, cell, cell + (int) run, (byte) state);
+            counts[state] += (int) run;
+            cell += (int) run;
+        }
+    }
+
+    // Applies the changed cells of a delta to the states
+    private void readDelta(long length) throws IOException {
+        long end = position - in.remaining() + length;
+        int cell = 0;
+        while (position - in.remaining() < end) {
+            cell += (int) readVarint();
+            long value = readVarint();
+            int state = (int) (value & 3);
+            long run = value >>> 2;
+            if (state > Brain.DYING || cell < 0 || run > states.length - cell) {
+                throw new IOException("Damaged delta");
+            }
+            for (int k = cell; k < cell + run; k++) {
+                counts[states[k]]--;
+                states[k] = (byte) state;
+            }
+            counts[state] += (int) run;
+            cell += (int) run;
+        }
+    }
+
+    // Returns the step of a keyframe in the index
+    private int keyframeStep(int keyframe) {
+        return (int) keyframes.getLong(4 + keyframe * ENTRY);
+    }
+
+    // Reads a variable length number
+    private long readVarint() throws IOException {
+        long value = 0;
+        int shift = 0;
+        int b;
+        do {
+            if (!ensure(1) || shift > 63) {
+                throw new IOException("Recording ends in the middle of a record");
+            }
+            b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    // Makes sure the buffer holds some bytes, reading more of the file if needed, returns false at the end of the file
+    private boolean ensure(int bytes) throws IOException {
+        if (in.remaining() >= bytes) {
+            return true;
+        }
+        in.compact();
+        int read;
+        while (in.position() < bytes && (read = channel.read(in, position)) > 0) {
+            position += read;
+        }
+        in.flip();
+        return in.remaining() >= bytes;
+    }
+
+    // Empties the buffer and fills it from a file position
+    private void fill(long from) throws IOException {
+        in.clear();
+        in.flip();
+        position = from;
+        ensure(1);
+    }
+
+    /**
+     * Creates an engine holding the current generation, which can then be simulated further
+     * @param type the kind of engine
+     * @return the new engine
+     */
+    public SimulationEngine toEngine(EngineType type) {
+        SimulationEngine brain = type.create(width, height, birthNumber, wrapping);
+        for (int k = 0; k < states.length; k++) {
+            if (states[k] != Brain.OFF) {
+                brain.setState(k / width, k % width, states[k]);
+            }
+        }
+        brain.setStepCount(step);
+        return brain;
+    }
+
+    /**
+     * Returns the state of a given cell of the current generation
+     * @param i the cell row
+     * @param j the cell column
+     * @return Brain.OFF, Brain.ON or Brain.DYING
+     */
+    public int getState(int i, int j) {
+        return states[i * width + j];
+    }
+
+    /**
+     * Returns the simulation step of the current generation
+     * @return the simulation step
+     */
+    public int getStepCount() {
+        return step;
+    }
+
+    /**
+     * Returns the number of cells with on status
+     * @return the number of on cells
+     */
+    public int getOnCount() {
+        return counts[Brain.ON];
+    }
+
+    /**
+     * Returns the number of cells with dying status
+     * @return the number of dying cells
+     */
+    public int getDyingCount() {
+        return counts[Brain.DYING];
+    }
+
+    /**
+     * Returns the number of cells with off status
+     * @return the number of off cells
+     */
+    public int getOffCount() {
+        return counts[Brain.OFF];
+    }
+
+    /**
+     * Returns the width of the grid
+     * @return the width of the grid
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Returns the height of the grid
+     * @return the height of the grid
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Returns the number of ON neighbors that turns an OFF cell on
+     * @return the birth number
+     */
+    public int getBirthNumber() {
+        return birthNumber;
+    }
+
+    /**
+     * Returns whether the grid wraps around both horizontally and vertically
+     * @return true if the grid wraps
+     */
+    public boolean isWrapping() {
+        return wrapping;
+    }
+
+    /**
+     * Closes the recording
+     * @throws IOException if it cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
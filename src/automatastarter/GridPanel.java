@@ -6,16 +6,58 @@ package automatastarter;
 
 import java.awt.Color;
 import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.IndexColorModel;
 
 /**
  * Panel that displays the simulation grid
  * @author paul
  */
 public class GridPanel extends javax.swing.JPanel {
+    // Cell colors indexed by state: OFF, ON and DYING
+    static final IndexColorModel PALETTE = palette(Color.BLACK, Color.RED, Color.ORANGE);
+    
     // Initialse variables
-    public Brain brain;
+    public SimulationEngine brain;
+    // Generation drawn while the simulation thread owns the engine
+    private Snapshot snapshot;
     private boolean editMode;
-    private int min;
+    // Viewport: screen pixels per cell and the cell at the top left corner of the panel
+    private double zoom = 1;
+    private double originX;
+    private double originY;
+    // True while the whole grid is fitted into the panel
+    private boolean fit = true;
+    // Last mouse position while dragging the viewport
+    private int dragX;
+    private int dragY;
+    // Largest zoom, in screen pixels per cell
+    private static final double MAX_ZOOM = 64;
+    // Image with one pixel per cell, kept from frame to frame and only updated where cells changed
+    private BufferedImage raster;
+    // False when the image has to be redrawn completely
+    private boolean valid;
+    // Engine drawn into the image, null while drawing snapshots, and the sequence of the last snapshot drawn
+    private SimulationEngine drawnBrain;
+    private long drawnSequence;
+    // Tiles of the engine that changed since the last refresh
+    private DirtyTiles pending;
+    // Downsampled copies of the image for zoom levels below one pixel per cell, built when first needed
+    private MipChain mips;
+    
+    // Builds a color model with one entry per cell state
+    private static IndexColorModel palette(Color... colors){
+        byte[] red = new byte[colors.length];
+        byte[] green = new byte[colors.length];
+        byte[] blue = new byte[colors.length];
+        for (int k = 0; k < colors.length; k++) {
+            red[k] = (byte) colors[k].getRed();
+            green[k] = (byte) colors[k].getGreen();
+            blue[k] = (byte) colors[k].getBlue();
+        }
+        return new IndexColorModel(2, colors.length, red, green, blue);
+    }
     
     /**
      * Creates new form GridPanel
@@ -28,8 +70,179 @@ public class GridPanel extends javax.swing.JPanel {
      * Associates a data model with the display grid
      * @param brain the data model 
      */
-    public void setBrain(Brain brain){
+    public void setBrain(SimulationEngine brain){
         this.brain = brain;
+        valid = false;
+    }
+    
+    /**
+     * Sets the generation to draw while the engine is running on another thread
+     * and repaints the tiles that changed since the previous one
+     * @param snapshot the generation to draw, or null to draw the engine itself
+     */
+    public void setSnapshot(Snapshot snapshot){
+        this.snapshot = snapshot;
+        if (snapshot == null) {
+            // Back to drawing the engine, which may have moved on since the last snapshot
+            valid = false;
+            refresh();
+            return;
+        }
+        if (valid && drawnBrain == null && snapshot.getSequence() == drawnSequence) {
+            return;
+        }
+        byte[] pixels = rasterFor(snapshot.getWidth(), snapshot.getHeight());
+        // The changed tiles only describe the step from the previous snapshot, if one was skipped redraw everything
+        if (!valid || drawnBrain != null || snapshot.getSequence() != drawnSequence + 1 || snapshot.getDirty().isAll()) {
+            System.arraycopy(snapshot.getStates(), 0, pixels, 0, pixels.length);
+            if (mips != null) {
+                mips.rebuild();
+            }
+            valid = true;
+            drawnBrain = null;
+            drawnSequence = snapshot.getSequence();
+            repaint();
+            return;
+        }
+        DirtyTiles dirty = snapshot.getDirty();
+        byte[] states = snapshot.getStates();
+        int columns = snapshot.getWidth();
+        for (int row = 0; row < dirty.getRows(); row++) {
+            for (int column = 0; column < dirty.getColumns(); column++) {
+                if (dirty.isDirty(row, column)) {
+                    // Copy the rows of the tile, cell states are the color indices
+                    int left = column * DirtyTiles.TILE;
+                    int length = Math.min(DirtyTiles.TILE, columns - left);
+                    int bottom = Math.min((row + 1) * DirtyTiles.TILE, snapshot.getHeight());
+                    for (int i = row * DirtyTiles.TILE; i < bottom; i++) {
+                        System.arraycopy(states, i * columns + left, pixels, i * columns + left, length);
+                    }
+                }
+            }
+        }
+        if (mips != null) {
+            mips.update(dirty);
+        }
+        drawnSequence = snapshot.getSequence();
+        repaintTiles(dirty, snapshot.getWidth(), snapshot.getHeight());
+    }
+    
+    /**
+     * Redraws the cells of the engine that changed since the last refresh,
+     * call after changing the engine while no simulation thread is running
+     */
+    public void refresh(){
+        if (brain == null || snapshot != null) {
+            repaint();
+            return;
+        }
+        if (updateFromEngine()) {
+            repaint();
+        } else {
+            repaintTiles(pending, brain.getWidth(), brain.getHeight());
+        }
+    }
+    
+    // Copies the changed cells of the engine into the image and returns true if everything was redrawn
+    private boolean updateFromEngine(){
+        byte[] pixels = rasterFor(brain.getWidth(), brain.getHeight());
+        pending.clear();
+        brain.collectChanges(pending);
+        if (!valid || drawnBrain != brain || pending.isAll()) {
+            // A new engine, a new image or an engine that does not track its changes, copy all cells
+            brain.copyStates(pixels);
+            if (mips != null) {
+                mips.rebuild();
+            }
+            valid = true;
+            drawnBrain = brain;
+            return true;
+        }
+        int columns = brain.getWidth();
+        for (int row = 0; row < pending.getRows(); row++) {
+            for (int column = 0; column < pending.getColumns(); column++) {
+                if (pending.isDirty(row, column)) {
+                    int right = Math.min((column + 1) * DirtyTiles.TILE, columns);
+                    int bottom = Math.min((row + 1) * DirtyTiles.TILE, brain.getHeight());
+                    for (int i = row * DirtyTiles.TILE; i < bottom; i++) {
+                        for (int j = column * DirtyTiles.TILE; j < right; j++) {
+                            pixels[i * columns + j] = (byte) brain.getState(i, j);
+                        }
+                    }
+                }
+            }
+        }
+        if (mips != null) {
+            mips.update(pending);
+        }
+        return false;
+    }
+    
+    // Repaints the area of the panel covering the changed tiles
+    private void repaintTiles(DirtyTiles dirty, int columns, int rows){
+        if (dirty.isEmpty()) {
+            return;
+        }
+        // Bounding box of the changed tiles
+        int top = dirty.getRows();
+        int bottom = -1;
+        int left = dirty.getColumns();
+        int right = -1;
+        for (int row = 0; row < dirty.getRows(); row++) {
+            for (int column = 0; column < dirty.getColumns(); column++) {
+                if (dirty.isDirty(row, column)) {
+                    top = Math.min(top, row);
+                    bottom = row;
+                    left = Math.min(left, column);
+                    right = Math.max(right, column);
+                }
+            }
+        }
+        // Convert the tile rectangle to panel pixels, rounding outwards
+        updateViewport(columns, rows);
+        int x = (int) Math.floor((left * DirtyTiles.TILE - originX) * zoom);
+        int y = (int) Math.floor((top * DirtyTiles.TILE - originY) * zoom);
+        int x2 = (int) Math.ceil(((right + 1) * DirtyTiles.TILE - originX) * zoom);
+        int y2 = (int) Math.ceil(((bottom + 1) * DirtyTiles.TILE - originY) * zoom);
+        repaint(x, y, x2 - x, y2 - y);
+    }
+    
+    // Fits the whole grid into the panel while in fit mode, with square cells
+    private void updateViewport(int columns, int rows){
+        if (!fit || getWidth() == 0) {
+            return;
+        }
+        zoom = Math.min((double) getWidth() / columns, (double) getHeight() / rows);
+        if (zoom >= 1) {
+            // Whole pixels per cell keep every cell the same size
+            zoom = Math.floor(zoom);
+        }
+        originX = 0;
+        originY = 0;
+    }
+    
+    /**
+     * Fits the whole grid into the panel again after zooming or panning
+     */
+    public void fitToPanel(){
+        fit = true;
+        repaint();
+    }
+    
+    /**
+     * Zooms the viewport in or out keeping the cell under a point of the panel in place
+     * @param factor how much larger cells become, below 1 zooms out
+     * @param x the horizontal position of the fixed point in the panel
+     * @param y the vertical position of the fixed point in the panel
+     */
+    public void zoomBy(double factor, int x, int y){
+        double cellX = originX + x / zoom;
+        double cellY = originY + y / zoom;
+        zoom = Math.max(Math.min(zoom * factor, MAX_ZOOM), 1.0 / (1 << 20));
+        originX = cellX - x / zoom;
+        originY = cellY - y / zoom;
+        fit = false;
+        repaint();
     }
     
     /**
@@ -45,32 +258,59 @@ public class GridPanel extends javax.swing.JPanel {
         super.paintComponent(g);
         // This line is necessary to address issues in netBeans design mode
         if (brain == null || getWidth() == 0) return;
-        int width = getWidth();
-        int height = getHeight();
         
-        // Calculate the cell size and make sure it is square
-        int cellWidth = width/brain.getWidth();
-        int cellHeight = height/brain.getHeight();
-        min = (cellWidth > cellHeight) ? cellHeight : cellWidth;
+        // Never read the engine while the simulation thread is advancing it
+        Snapshot shown = snapshot;
+        int columns = (shown != null) ? shown.getWidth() : brain.getWidth();
+        int rows = (shown != null) ? shown.getHeight() : brain.getHeight();
         
-        // Erase the grid
-        g.setColor(Color.BLACK);
-        g.fillRect(0, 0, brain.getWidth() * min, brain.getHeight() * min);
+        // Calculate the cell size unless the user zoomed in or out
+        updateViewport(columns, rows);
+        
+        // Bring the image up to date if the engine was changed without a refresh
+        if (shown == null && !updateFromEngine()) {
+            repaintTiles(pending, columns, rows);
+        }
         
-        // Iterate through the grid
-        for (int i = 0; i < brain.cells.length; i++) {
-            for (int j = 0; j < brain.cells[i].length; j++) {
-                //print each cell in the row
-                if (brain.cells[i][j] == Brain.STATES[Brain.ON]) {
-                    g.setColor(Color.RED);
-                    g.fillRect(j * min, i * min, min, min);
-                } else if (brain.cells[i][j] == Brain.STATES[Brain.DYING]){
-                    g.setColor(Color.ORANGE);
-                    g.fillRect(j * min, i * min, min, min);
-                } 
-                
+        // Below one pixel per cell draw a downsampled level where each pixel covers a block of cells
+        int level = 0;
+        while (zoom * (1 << level) < 1 && level < 30) {
+            level++;
+        }
+        BufferedImage image = raster;
+        if (level > 0) {
+            if (mips == null) {
+                mips = new MipChain(raster);
             }
+            level = Math.min(level, mips.getLevelCount() - 1);
+            image = mips.level(level);
+        }
+        
+        // Only the visible window of the image is drawn, scaled up in a single call
+        int block = 1 << level;
+        int sx1 = Math.max(0, (int) Math.floor(originX / block));
+        int sy1 = Math.max(0, (int) Math.floor(originY / block));
+        int sx2 = Math.min(image.getWidth(), (int) Math.ceil((originX + getWidth() / zoom) / block));
+        int sy2 = Math.min(image.getHeight(), (int) Math.ceil((originY + getHeight() / zoom) / block));
+        if (sx1 >= sx2 || sy1 >= sy2) {
+            return;
+        }
+        int dx1 = (int) Math.round((sx1 * block - originX) * zoom);
+        int dy1 = (int) Math.round((sy1 * block - originY) * zoom);
+        int dx2 = (int) Math.round((sx2 * block - originX) * zoom);
+        int dy2 = (int) Math.round((sy2 * block - originY) * zoom);
+        g.drawImage(image, dx1, dy1, dx2, dy2, sx1, sy1, sx2, sy2, null);
+    }
+    
+    // Returns the pixels of an image with one pixel per cell, reusing the image while the grid size stays the same
+    private byte[] rasterFor(int columns, int rows){
+        if (raster == null || raster.getWidth() != columns || raster.getHeight() != rows) {
+            raster = new BufferedImage(columns, rows, BufferedImage.TYPE_BYTE_INDEXED, PALETTE);
+            pending = new DirtyTiles(columns, rows);
+            mips = null;
+            valid = false;
         }
+        return ((DataBufferByte) raster.getRaster().getDataBuffer()).getData();
     }
 
     /**
@@ -91,6 +331,16 @@ public class GridPanel extends javax.swing.JPanel {
                 formMousePressed(evt);
             }
         });
+        addMouseMotionListener(new java.awt.event.MouseMotionAdapter() {
+            public void mouseDragged(java.awt.event.MouseEvent evt) {
+                formMouseDragged(evt);
+            }
+        });
+        addMouseWheelListener(new java.awt.event.MouseWheelListener() {
+            public void mouseWheelMoved(java.awt.event.MouseWheelEvent evt) {
+                formMouseWheelMoved(evt);
+            }
+        });
 
         javax.swing.GroupLayout layout = new javax.swing.GroupLayout(this);
         this.setLayout(layout);
@@ -105,26 +355,49 @@ public class GridPanel extends javax.swing.JPanel {
     }// </editor-fold>//GEN-END:initComponents
 
     private void formMouseClicked(java.awt.event.MouseEvent evt) {//GEN-FIRST:event_formMouseClicked
-
+        // A double click outside edit mode fits the whole grid into the panel again
+        if (!editMode && evt.getClickCount() == 2) {
+            fitToPanel();
+        }
     }//GEN-LAST:event_formMouseClicked
 
     private void formMousePressed(java.awt.event.MouseEvent evt) {//GEN-FIRST:event_formMousePressed
+        // Remember where a drag of the viewport starts
+        dragX = evt.getX();
+        dragY = evt.getY();
         // When we click on a cell on the grid we toggle between its states
-        if (editMode) {
-            // Find the cell clicked
-            int x = evt.getX();
-            int y = evt.getY();
-            int j = x / min;
-            int i = y / min;
-            if (i < brain.getHeight() && j < brain.getWidth()) {
+        if (editMode && javax.swing.SwingUtilities.isLeftMouseButton(evt)) {
+            // Find the cell clicked through the viewport
+            int j = (int) Math.floor(originX + evt.getX() / zoom);
+            int i = (int) Math.floor(originY + evt.getY() / zoom);
+            if (i >= 0 && j >= 0 && i < brain.getHeight() && j < brain.getWidth()) {
                 // If the click is on a cell, toggle it
                 brain.switchState(i, j);
+                ((GamePanel)getParent()).recordHistory();
                 ((GamePanel)getParent()).updateStatus();
-                repaint();
+                // Only the tile of the toggled cell is repainted
+                refresh();
             }
         }
     }//GEN-LAST:event_formMousePressed
 
+    private void formMouseDragged(java.awt.event.MouseEvent evt) {//GEN-FIRST:event_formMouseDragged
+        // Dragging pans the viewport, in edit mode only with the right button
+        if (!editMode || javax.swing.SwingUtilities.isRightMouseButton(evt)) {
+            originX -= (evt.getX() - dragX) / zoom;
+            originY -= (evt.getY() - dragY) / zoom;
+            fit = false;
+            repaint();
+        }
+        dragX = evt.getX();
+        dragY = evt.getY();
+    }//GEN-LAST:event_formMouseDragged
+
+    private void formMouseWheelMoved(java.awt.event.MouseWheelEvent evt) {//GEN-FIRST:event_formMouseWheelMoved
+        // Each notch of the wheel zooms by a quarter around the mouse pointer
+        zoomBy(Math.pow(1.25, -evt.getPreciseWheelRotation()), evt.getX(), evt.getY());
+    }//GEN-LAST:event_formMouseWheelMoved
+
     // Variables declaration - do not modify//GEN-BEGIN:variables
     // End of variables declaration//GEN-END:variables
 }
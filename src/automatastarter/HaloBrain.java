@@ -0,0 +1,315 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package automatastarter;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Data model for Brian's Brain simulation stored with a one cell ghost border.
+ * With wrapping the border is refreshed from the opposite edges once per
+ * generation, otherwise it stays OFF, so the stepping kernel reads all eight
+ * neighbors of every interior cell without wrap or bounds checks
+ * @author paul
+ */
+public class HaloBrain implements SimulationEngine {
+    // Step method of the SIMD kernel, null if it was not built or the Vector API module is not enabled
+    private static final MethodHandle VECTOR_STEP = findVectorKernel();
+    // True if the SIMD kernel can be used in this virtual machine
+    public static final boolean VECTOR_AVAILABLE = VECTOR_STEP != null;
+
+    // Initialise variables
+    private int height;
+    private int width;
+    private int birthNumber;
+    private boolean wrapping;
+    // Distance between two rows, including the two ghost columns
+    private int stride;
+    // Current generation and back buffer, one byte per cell
+    private byte[] cells;
+    private byte[] next;
+    // Next state indexed by state * 9 + number of ON neighbors
+    private byte[] transition;
+    private int onCount;
+    private int offCount;
+    private int dyingCount;
+    private int stepCount;
+    private boolean vectorized;
+
+    /**
+     * Constructor, creates a halo brain simulation given the parameter values
+     * @param width the width of the grid
+     * @param height the height of the grid
+     * @param birthNumber the number of neighboring cells that must be on in
+     *                    order an off cell on
+     * @param wrapping if true the grid wraps both horizontally and vertically
+     */
+    public HaloBrain(int width, int height, int birthNumber, boolean wrapping){
+        this.width = width;
+        this.height = height;
+        this.birthNumber = birthNumber;
+        this.wrapping = wrapping;
+        stride = width + 2;
+        cells = new byte[stride * (height + 2)];
+        next = new byte[stride * (height + 2)];
+        transition = new byte[27];
+        for (int count = 0; count <= 8; count++) {
+            transition[Brain.OFF * 9 + count] = (byte) ((count == birthNumber) ? Brain.ON : Brain.OFF);
+            transition[Brain.ON * 9 + count] = Brain.DYING;
+            transition[Brain.DYING * 9 + count] = Brain.OFF;
+        }
+        clear();
+    }
+
+    /**
+     * Initialize the simulation with a random pattern
+     */
+    public void randomize() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        // Reset all counters to zero
+        onCount = 0;
+        dyingCount = 0;
+        stepCount = 0;
+        for (int i = 1; i <= height; i++) {
+            for (int k = i * stride + 1; k <= i * stride + width; k++) {
+                // Assigns the random state not including DYING
+                cells[k] = (byte) (random.nextBoolean() ? Brain.ON : Brain.OFF);
+                onCount += cells[k];
+            }
+        }
+        offCount = width * height - onCount;
+    }
+
+    /**
+     * Advance the simulation by one step
+     */
+    public void update() {
+        if (wrapping) {
+            refreshHalo();
+        }
+        int[] counts = new int[3];
+        if (vectorized) {
+            stepVector(counts);
+        } else {
+            stepScalar(counts);
+        }
+        onCount = counts[Brain.ON];
+        offCount = counts[Brain.OFF];
+        dyingCount = counts[Brain.DYING];
+
+        // Swap the buffers so the new generation becomes current
+        byte[] temp = cells;
+        cells = next;
+        next = temp;
+        stepCount++;
+    }
+
+    // Computes the next generation one cell at a time and stores the OFF, ON and DYING counts
+    private void stepScalar(int[] counts) {
+        for (int i = 1; i <= height; i++) {
+            int start = i * stride + 1;
+            int end = start + width;
+            for (int k = start; k < end; k++) {
+                // ON is the only state with the lowest bit set
+                int count = (cells[k - stride - 1] & 1) + (cells[k - stride] & 1) + (cells[k - stride + 1] & 1)
+                          + (cells[k - 1] & 1) + (cells[k + 1] & 1)
+                          + (cells[k + stride - 1] & 1) + (cells[k + stride] & 1) + (cells[k + stride + 1] & 1);
+                byte result = transition[cells[k] * 9 + count];
+                next[k] = result;
+                counts[result]++;
+            }
+        }
+    }
+
+    // Copies the opposite edges of the grid into the ghost border
+    private void refreshHalo() {
+        // Ghost rows first, then ghost columns so the corners are copied too
+        System.arraycopy(cells, height * stride, cells, 0, stride);
+        System.arraycopy(cells, stride, cells, (height + 1) * stride, stride);
+        for (int i = 0; i <= height + 1; i++) {
+            int row = i * stride;
+            cells[row] = cells[row + width];
+            cells[row + width + 1] = cells[row + 1];
+        }
+    }
+
+    /**
+     * Reset all cells to off state
+     */
+    public void clear(){
+        // Reset all counters
+        onCount = 0;
+        dyingCount = 0;
+        stepCount = 0;
+        offCount = width * height;
+        Arrays.fill(cells, (byte) Brain.OFF);
+        Arrays.fill(next, (byte) Brain.OFF);
+    }
+
+    /**
+     * Returns the state of a given cell
+     * @param i the cell row
+     * @param j the cell column
+     * @return Brain.OFF, Brain.ON or Brain.DYING
+     */
+    public int getState(int i, int j){
+        return cells[(i + 1) * stride + j + 1];
+    }
+
+    /**
+     * Copies the state of every cell into an array in row order, skipping the ghost border
+     * @param states receives width * height states
+     */
+    public void copyStates(byte[] states){
+        for (int i = 0; i < height; i++) {
+            System.arraycopy(cells, (i + 1) * stride + 1, states, i * width, width);
+        }
+    }
+
+    /**
+     * Sets the state of a given cell and keeps the counters in sync
+     * @param i the cell row
+     * @param j the cell column
+     * @param state Brain.OFF, Brain.ON or Brain.DYING
+     */
+    public void setState(int i, int j, int state){
+        int k = (i + 1) * stride + j + 1;
+        count(cells[k], -1);
+        cells[k] = (byte) state;
+        count(state, 1);
+    }
+
+    // Adjusts the counter of the given state
+    private void count(int state, int delta) {
+        if (state == Brain.ON) {
+            onCount += delta;
+        } else if (state == Brain.DYING) {
+            dyingCount += delta;
+        } else {
+            offCount += delta;
+        }
+    }
+
+    /* Looks up the SIMD kernel, which is only compiled by a build with -Dvector.enabled=true and
+        can only be loaded when the virtual machine was started with --add-modules jdk.incubator.vector
+    */
+    private static MethodHandle findVectorKernel() {
+        if (!ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            return null;
+        }
+        try {
+            Class<?> kernel = Class.forName("automatastarter.VectorKernel");
+            return MethodHandles.lookup().findStatic(kernel, "step", MethodType.methodType(void.class,
+                    byte[].class, byte[].class, int.class, int.class, int.class, int.class, int[].class));
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    // Steps every interior cell with the SIMD kernel
+    private void stepVector(int[] counts) {
+        try {
+            VECTOR_STEP.invokeExact(cells, next, stride, width, height, birthNumber, counts);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Enables or disables the SIMD stepping kernel. The kernel is only built
+     * with ant -Dvector.enabled=true and needs the jdk.incubator.vector module
+     * (java --add-modules jdk.incubator.vector), without either of them the
+     * scalar kernel keeps being used
+     * @param vectorized if true update steps a full vector of cells at a time
+     */
+    public void setVectorized(boolean vectorized){
+        this.vectorized = vectorized && VECTOR_AVAILABLE;
+    }
+
+    /**
+     * Returns whether the SIMD stepping kernel is in use
+     * @return true if update uses the Vector API
+     */
+    public boolean isVectorized(){
+        return vectorized;
+    }
+
+    /**
+     * Returns the number of ON neighbors that turns an OFF cell on
+     * @return the birth number
+     */
+    public int getBirthNumber(){
+        return birthNumber;
+    }
+
+    /**
+     * Returns whether the grid wraps around both horizontally and vertically
+     * @return true if the grid wraps
+     */
+    public boolean isWrapping(){
+        return wrapping;
+    }
+
+    /**
+     * Returns the width of the grid
+     * @return the width of the grid
+     */
+    public int getWidth(){
+        return width;
+    }
+
+    /**
+     * Returns the height of the grid
+     * @return the height of the grid
+     */
+    public int getHeight(){
+        return height;
+    }
+
+    /**
+     * Returns the number of cells with off status
+     * @return the number of off cells
+     */
+    public int getOffCount(){
+        return offCount;
+    }
+
+    /**
+     * Returns the number of cells with on status
+     * @return the number of on cells
+     */
+    public int getOnCount(){
+        return onCount;
+    }
+
+    /**
+     * Returns the number of cells with dying status
+     * @return the number of dying cells
+     */
+    public int getDyingCount(){
+        return dyingCount;
+    }
+
+    /**
+     * Returns the current simulation step
+     * @return the simulation step
+     */
+    public int getStepCount(){
+        return stepCount;
+    }
+
+    /**
+     * Sets the simulation step, for a grid restored from a file
+     * @param stepCount the simulation step
+     */
+    public void setStepCount(int stepCount){
+        this.stepCount = stepCount;
+    }
+}
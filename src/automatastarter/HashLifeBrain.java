@@ -0,0 +1,655 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package automatastarter;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * HashLife data model for Brian's Brain simulation on an unbounded plane.
+ * The universe is a quadtree of hash-consed canonical nodes, every node
+ * memoizes its future so repeated regions are only ever computed once and
+ * the simulation can jump 2^k generations at once.
+ * The width and height only describe the viewport, centered on the origin,
+ * that getState, setState and the cell counters address
+ * @author paul
+ */
+public class HashLifeBrain implements SimulationEngine {
+    // Default number of canonical nodes kept before unreachable ones are collected
+    public static final int DEFAULT_MAX_NODES = 1 << 20;
+
+    // Smallest level of the root node, a level k node is 2^k cells wide
+    private static final int MIN_LEVEL = 3;
+
+    /**
+     * A canonical quadtree node. Two nodes with the same content are always
+     * the same object, so children can be compared by reference
+     */
+    private static final class Node {
+        final int level;
+        final Node nw;
+        final Node ne;
+        final Node sw;
+        final Node se;
+        // Cell state of a level 0 node
+        final int state;
+        // Populations cached per node
+        final long onCount;
+        final long dyingCount;
+        final int hash;
+        // Center node advanced by 2^(level - 2) generations
+        Node result;
+        // Center node advanced by 2^stepK generations, for smaller jumps
+        Node stepResult;
+        int stepK = -1;
+        // Next node in the same hash bucket
+        Node chain;
+        // Last collection that found this node reachable
+        int mark;
+
+        // Creates a leaf
+        Node(int state) {
+            level = 0;
+            nw = ne = sw = se = null;
+            this.state = state;
+            onCount = (state == Brain.ON) ? 1 : 0;
+            dyingCount = (state == Brain.DYING) ? 1 : 0;
+            hash = state + 1;
+        }
+
+        // Creates an inner node from its four quadrants
+        Node(Node nw, Node ne, Node sw, Node se) {
+            level = nw.level + 1;
+            this.nw = nw;
+            this.ne = ne;
+            this.sw = sw;
+            this.se = se;
+            state = Brain.OFF;
+            onCount = nw.onCount + ne.onCount + sw.onCount + se.onCount;
+            dyingCount = nw.dyingCount + ne.dyingCount + sw.dyingCount + se.dyingCount;
+            hash = hashOf(nw, ne, sw, se);
+        }
+
+        long population() {
+            return onCount + dyingCount;
+        }
+    }
+
+    // Initialise variables
+    private int height;
+    private int width;
+    private int birthNumber;
+    private final Node[] leaves = {new Node(Brain.OFF), new Node(Brain.ON), new Node(Brain.DYING)};
+    // Canonical node table with chained buckets
+    private Node[] table = new Node[1 << 16];
+    private int nodeCount;
+    private int maxNodes = DEFAULT_MAX_NODES;
+    // Node count that triggers the next collection, raised when the reachable nodes alone come close to the limit
+    private int collectAt = DEFAULT_MAX_NODES;
+    private int gcEpoch;
+    // Empty node of every level, created on demand
+    private Node[] emptyNodes = new Node[64];
+    private Node root;
+    private long generation;
+
+    /**
+     * Constructor, creates a HashLife simulation given the parameter values
+     * @param width the width of the viewport
+     * @param height the height of the viewport
+     * @param birthNumber the number of neighboring cells that must be on in
+     *                    order an off cell on, at least 1 so empty space stays empty
+     */
+    public HashLifeBrain(int width, int height, int birthNumber){
+        if (birthNumber < 1 || birthNumber > 8) {
+            throw new IllegalArgumentException("Birth number must be between 1 and 8 on an unbounded plane");
+        }
+        this.width = width;
+        this.height = height;
+        this.birthNumber = birthNumber;
+        clear();
+    }
+
+    private static int hashOf(Node nw, Node ne, Node sw, Node se) {
+        int h = nw.hash;
+        h = h * 0x9E3779B1 + ne.hash;
+        h = h * 0x9E3779B1 + sw.hash;
+        h = h * 0x9E3779B1 + se.hash;
+        return h ^ (h >>> 15);
+    }
+
+    // Returns the canonical node with the given quadrants
+    private Node join(Node nw, Node ne, Node sw, Node se) {
+        int h = hashOf(nw, ne, sw, se);
+        int bucket = h & (table.length - 1);
+        for (Node n = table[bucket]; n != null; n = n.chain) {
+            if (n.nw == nw && n.ne == ne && n.sw == sw && n.se == se) {
+                return n;
+            }
+        }
+        Node n = new Node(nw, ne, sw, se);
+        n.chain = table[bucket];
+        table[bucket] = n;
+        nodeCount++;
+        if (nodeCount > table.length - (table.length >> 2)) {
+            resize(table.length * 2);
+        }
+        return n;
+    }
+
+    // Rehashes every node into a table of the given size
+    private void resize(int size) {
+        Node[] old = table;
+        table = new Node[size];
+        for (Node head : old) {
+            Node n = head;
+            while (n != null) {
+                Node following = n.chain;
+                int bucket = n.hash & (size - 1);
+                n.chain = table[bucket];
+                table[bucket] = n;
+                n = following;
+            }
+        }
+    }
+
+    // Returns the empty node of the given level
+    private Node empty(int level) {
+        if (emptyNodes[level] == null) {
+            Node e = (level == 0) ? leaves[Brain.OFF] : empty(level - 1);
+            emptyNodes[level] = (level == 0) ? e : join(e, e, e, e);
+        }
+        return emptyNodes[level];
+    }
+
+    // Returns the centered node one level down
+    private Node center(Node n) {
+        return join(n.nw.se, n.ne.sw, n.sw.ne, n.se.nw);
+    }
+
+    // Returns the node one level down centered on the border between two horizontal neighbors
+    private Node horizontal(Node w, Node e) {
+        return join(w.ne, e.nw, w.se, e.sw);
+    }
+
+    // Returns the node one level down centered on the border between two vertical neighbors
+    private Node vertical(Node n, Node s) {
+        return join(n.sw, n.se, s.nw, s.ne);
+    }
+
+    // Returns the center of a level 2 node advanced by one generation
+    private Node baseStep(Node n) {
+        int[][] grid = new int[4][4];
+        for (int y = 0; y < 4; y++) {
+            for (int x = 0; x < 4; x++) {
+                grid[y][x] = cell(n, x, y);
+            }
+        }
+        Node[] out = new Node[4];
+        for (int k = 0; k < 4; k++) {
+            int y = 1 + k / 2;
+            int x = 1 + k % 2;
+            int state = grid[y][x];
+            int next;
+            if (state == Brain.ON) {
+                // ON cells always start dying
+                next = Brain.DYING;
+            } else if (state == Brain.DYING) {
+                // DYING cells always turn off
+                next = Brain.OFF;
+            } else {
+                int count = 0;
+                for (int dy = -1; dy <= 1; dy++) {
+                    for (int dx = -1; dx <= 1; dx++) {
+                        if ((dx != 0 || dy != 0) && grid[y + dy][x + dx] == Brain.ON) {
+                            count++;
+                        }
+                    }
+                }
+                next = (count == birthNumber) ? Brain.ON : Brain.OFF;
+            }
+            out[k] = leaves[next];
+        }
+        return join(out[0], out[1], out[2], out[3]);
+    }
+
+    // Returns the state of a cell in a node, x and y are relative to the node's top left corner
+    private static int cell(Node n, long x, long y) {
+        while (n.level > 0) {
+            long half = 1L << (n.level - 1);
+            if (n.population() == 0) {
+                return Brain.OFF;
+            }
+            if (y < half) {
+                n = (x < half) ? n.nw : n.ne;
+            } else {
+                n = (x < half) ? n.sw : n.se;
+                y -= half;
+            }
+            if (x >= half) {
+                x -= half;
+            }
+        }
+        return n.state;
+    }
+
+    // Returns the center of a node advanced by 2^(level - 2) generations
+    private Node result(Node n) {
+        if (n.result != null) {
+            return n.result;
+        }
+        Node r;
+        if (n.population() == 0) {
+            r = empty(n.level - 1);
+        } else if (n.level == 2) {
+            r = baseStep(n);
+        } else {
+            // Advance nine overlapping subnodes by half the time
+            Node n00 = result(n.nw);
+            Node n01 = result(horizontal(n.nw, n.ne));
+            Node n02 = result(n.ne);
+            Node n10 = result(vertical(n.nw, n.sw));
+            Node n11 = result(center(n));
+            Node n12 = result(vertical(n.ne, n.se));
+            Node n20 = result(n.sw);
+            Node n21 = result(horizontal(n.sw, n.se));
+            Node n22 = result(n.se);
+            // Then advance the four quadrants they form by the other half
+            r = join(result(join(n00, n01, n10, n11)),
+                     result(join(n01, n02, n11, n12)),
+                     result(join(n10, n11, n20, n21)),
+                     result(join(n11, n12, n21, n22)));
+        }
+        n.result = r;
+        return r;
+    }
+
+    // Returns the center of a node advanced by 2^k generations, k is at most level - 2
+    private Node advance(Node n, int k) {
+        if (k == n.level - 2) {
+            return result(n);
+        }
+        if (n.stepK == k) {
+            return n.stepResult;
+        }
+        Node r;
+        if (n.population() == 0) {
+            r = empty(n.level - 1);
+        } else {
+            // Take the nine overlapping subnodes without advancing them
+            Node n00 = center(n.nw);
+            Node n01 = center(horizontal(n.nw, n.ne));
+            Node n02 = center(n.ne);
+            Node n10 = center(vertical(n.nw, n.sw));
+            Node n11 = center(center(n));
+            Node n12 = center(vertical(n.ne, n.se));
+            Node n20 = center(n.sw);
+            Node n21 = center(horizontal(n.sw, n.se));
+            Node n22 = center(n.se);
+            // All of the time is spent advancing the four quadrants
+            r = join(advance(join(n00, n01, n10, n11), k),
+                     advance(join(n01, n02, n11, n12), k),
+                     advance(join(n10, n11, n20, n21), k),
+                     advance(join(n11, n12, n21, n22), k));
+        }
+        n.stepResult = r;
+        n.stepK = k;
+        return r;
+    }
+
+    // Wraps the root in a border of empty space, doubling its size around the origin
+    private void expand() {
+        Node e = empty(root.level - 1);
+        root = join(join(e, e, e, root.nw),
+                    join(e, e, root.ne, e),
+                    join(e, root.sw, e, e),
+                    join(root.se, e, e, e));
+    }
+
+    // Returns true if all the population of the root lies in its center quarter
+    private boolean centered() {
+        Node r = root;
+        long inner = r.nw.se.population() + r.ne.sw.population()
+                   + r.sw.ne.population() + r.se.nw.population();
+        return inner == r.population();
+    }
+
+    /**
+     * Advance the simulation by 2^k generations at once
+     * @param k the base 2 logarithm of the number of generations
+     */
+    public void stepPow2(int k) {
+        // Make room so nothing can travel past the part of the root that is kept,
+        // after the last expansion the population lies in the central eighth
+        while (root.level < k + 2 || !centered()) {
+            expand();
+        }
+        expand();
+        root = advance(root, k);
+        generation += 1L << k;
+        if (nodeCount > collectAt) {
+            collectGarbage();
+        }
+    }
+
+    /**
+     * Advance the simulation by the given number of generations
+     * @param generations the number of generations to advance
+     */
+    public void stepN(long generations) {
+        for (int k = 0; generations != 0; k++, generations >>>= 1) {
+            if ((generations & 1) != 0) {
+                stepPow2(k);
+            }
+        }
+    }
+
+    /**
+     * Advance the simulation by the given number of steps
+     * @param generations the number of steps
+     */
+    public void stepN(int generations) {
+        stepN((long) generations);
+    }
+
+    /**
+     * Advance the simulation by one step
+     */
+    public void update() {
+        stepPow2(0);
+    }
+
+    /* Keeps only the nodes reachable from the root, and the memoized results that lead to kept nodes.
+        When the root alone needs more than half the limit, collecting again after the next step would
+        free little and throw away the memoized results every time, so the next collection waits until
+        the table has doubled
+    */
+    private void collectGarbage() {
+        gcEpoch++;
+        markReachable(root);
+        Node[] old = table;
+        table = new Node[old.length];
+        nodeCount = 0;
+        for (Node head : old) {
+            Node n = head;
+            while (n != null) {
+                Node following = n.chain;
+                if (n.mark == gcEpoch) {
+                    // Memoized results may point to collected nodes
+                    if (n.result != null && n.result.level > 0 && n.result.mark != gcEpoch) {
+                        n.result = null;
+                    }
+                    if (n.stepResult != null && n.stepResult.level > 0 && n.stepResult.mark != gcEpoch) {
+                        n.stepResult = null;
+                        n.stepK = -1;
+                    }
+                    int bucket = n.hash & (table.length - 1);
+                    n.chain = table[bucket];
+                    table[bucket] = n;
+                    nodeCount++;
+                }
+                n = following;
+            }
+        }
+        emptyNodes = new Node[64];
+        collectAt = Math.max(maxNodes, nodeCount > maxNodes / 2 ? nodeCount * 2 : 0);
+    }
+
+    private void markReachable(Node n) {
+        if (n.level == 0 || n.mark == gcEpoch) {
+            return;
+        }
+        n.mark = gcEpoch;
+        markReachable(n.nw);
+        markReachable(n.ne);
+        markReachable(n.sw);
+        markReachable(n.se);
+    }
+
+    /**
+     * Sets the number of canonical nodes kept in memory before unreachable
+     * nodes are collected after a step
+     * @param maxNodes the node limit
+     */
+    public void setMaxNodes(int maxNodes) {
+        this.maxNodes = maxNodes;
+        collectAt = maxNodes;
+    }
+
+    /**
+     * Returns the number of canonical nodes currently in memory
+     * @return the node count
+     */
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    // Converts a viewport column to a universe coordinate
+    private long toX(int j) {
+        return j - width / 2;
+    }
+
+    // Converts a viewport row to a universe coordinate
+    private long toY(int i) {
+        return i - height / 2;
+    }
+
+    // Returns true if the universe coordinates are covered by the root
+    private boolean inRoot(long x, long y) {
+        long half = 1L << (root.level - 1);
+        return x >= -half && x < half && y >= -half && y < half;
+    }
+
+    /**
+     * Returns the state of a given cell in the viewport
+     * @param i the cell row
+     * @param j the cell column
+     * @return Brain.OFF, Brain.ON or Brain.DYING
+     */
+    public int getState(int i, int j){
+        long x = toX(j);
+        long y = toY(i);
+        if (!inRoot(x, y)) {
+            return Brain.OFF;
+        }
+        long half = 1L << (root.level - 1);
+        return cell(root, x + half, y + half);
+    }
+
+    /**
+     * Sets the state of a given cell in the viewport
+     * @param i the cell row
+     * @param j the cell column
+     * @param state Brain.OFF, Brain.ON or Brain.DYING
+     */
+    public void setState(int i, int j, int state){
+        long x = toX(j);
+        long y = toY(i);
+        while (!inRoot(x, y)) {
+            expand();
+        }
+        long half = 1L << (root.level - 1);
+        root = set(root, x + half, y + half, state);
+    }
+
+    // Returns a copy of the node with one cell changed
+    private Node set(Node n, long x, long y, int state) {
+        if (n.level == 0) {
+            return leaves[state];
+        }
+        long half = 1L << (n.level - 1);
+        if (y < half) {
+            if (x < half) {
+                return join(set(n.nw, x, y, state), n.ne, n.sw, n.se);
+            }
+            return join(n.nw, set(n.ne, x - half, y, state), n.sw, n.se);
+        }
+        if (x < half) {
+            return join(n.nw, n.ne, set(n.sw, x, y - half, state), n.se);
+        }
+        return join(n.nw, n.ne, n.sw, set(n.se, x - half, y - half, state));
+    }
+
+    /**
+     * Reset all cells to off state
+     */
+    public void clear(){
+        root = empty(MIN_LEVEL);
+        generation = 0;
+    }
+
+    /**
+     * Initialize the viewport with a random pattern
+     */
+    public void randomize() {
+        clear();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (!inRoot(toX(0), toY(0)) || !inRoot(toX(width - 1), toY(height - 1))) {
+            expand();
+        }
+        long half = 1L << (root.level - 1);
+        root = build(root.level, toX(0) + half, toY(0) + half, random);
+    }
+
+    // Builds a node with random ON cells inside the viewport, x0 and y0 give the viewport corner in node coordinates
+    private Node build(int level, long x0, long y0, ThreadLocalRandom random) {
+        long size = 1L << level;
+        if (x0 >= size || y0 >= size || x0 + width <= 0 || y0 + height <= 0) {
+            return empty(level);
+        }
+        if (level == 0) {
+            return leaves[random.nextBoolean() ? Brain.ON : Brain.OFF];
+        }
+        long half = size / 2;
+        return join(build(level - 1, x0, y0, random),
+                    build(level - 1, x0 - half, y0, random),
+                    build(level - 1, x0, y0 - half, random),
+                    build(level - 1, x0 - half, y0 - half, random));
+    }
+
+    /* Counts the cells of a node inside the viewport, the ON cells, the DYING cells or both as asked.
+        x0 and y0 give the node corner in viewport coordinates
+    */
+    private long countInViewport(Node n, long x0, long y0, boolean on, boolean dying) {
+        long size = 1L << n.level;
+        long cached = (on ? n.onCount : 0) + (dying ? n.dyingCount : 0);
+        if (cached == 0 || x0 >= width || y0 >= height || x0 + size <= 0 || y0 + size <= 0) {
+            return 0;
+        }
+        if (x0 >= 0 && y0 >= 0 && x0 + size <= width && y0 + size <= height) {
+            // Fully visible, use the cached population
+            return cached;
+        }
+        long half = size / 2;
+        return countInViewport(n.nw, x0, y0, on, dying) + countInViewport(n.ne, x0 + half, y0, on, dying)
+             + countInViewport(n.sw, x0, y0 + half, on, dying)
+             + countInViewport(n.se, x0 + half, y0 + half, on, dying);
+    }
+
+    // Counts the cells of the root inside the viewport, saturating at the largest int
+    private int viewportCount(boolean on, boolean dying) {
+        long half = 1L << (root.level - 1);
+        long count = countInViewport(root, width / 2 - half, height / 2 - half, on, dying);
+        return (int) Math.min(count, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns the number of ON neighbors that turns an OFF cell on
+     * @return the birth number
+     */
+    public int getBirthNumber(){
+        return birthNumber;
+    }
+
+    /**
+     * Returns false, the plane is unbounded and never wraps
+     * @return false
+     */
+    public boolean isWrapping(){
+        return false;
+    }
+
+    /**
+     * Returns the width of the viewport
+     * @return the width of the viewport
+     */
+    public int getWidth(){
+        return width;
+    }
+
+    /**
+     * Returns the height of the viewport
+     * @return the height of the viewport
+     */
+    public int getHeight(){
+        return height;
+    }
+
+    /**
+     * Returns the number of cells with off status inside the viewport,
+     * Integer.MAX_VALUE if the viewport holds more
+     * @return the number of off cells
+     */
+    public int getOffCount(){
+        long half = 1L << (root.level - 1);
+        long live = countInViewport(root, width / 2 - half, height / 2 - half, true, true);
+        return (int) Math.min((long) width * height - live, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns the number of cells with on status inside the viewport
+     * @return the number of on cells
+     */
+    public int getOnCount(){
+        return viewportCount(true, false);
+    }
+
+    /**
+     * Returns the number of cells with dying status inside the viewport
+     * @return the number of dying cells
+     */
+    public int getDyingCount(){
+        return viewportCount(false, true);
+    }
+
+    /**
+     * Returns the number of cells with on status in the whole universe, including those outside the viewport
+     * @return the number of on cells
+     */
+    public long getUniverseOnCount(){
+        return root.onCount;
+    }
+
+    /**
+     * Returns the number of cells with dying status in the whole universe, including those outside the viewport
+     * @return the number of dying cells
+     */
+    public long getUniverseDyingCount(){
+        return root.dyingCount;
+    }
+
+    /**
+     * Returns the current simulation step, Integer.MAX_VALUE once the
+     * generation no longer fits, use getGeneration for the exact value
+     * @return the simulation step
+     */
+    public int getStepCount(){
+        return (int) Math.min(generation, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns the current generation, which stepN can take past the range of an int
+     * @return the generation
+     */
+    public long getGeneration(){
+        return generation;
+    }
+
+    /**
+     * Sets the simulation step, for a grid restored from a file
+     * @param stepCount the simulation step
+     */
+    public void setStepCount(int stepCount){
+        this.generation = stepCount;
+    }
+}
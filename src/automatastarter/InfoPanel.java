@@ -58,7 +58,7 @@ public class InfoPanel extends javax.swing.JPanel {
         jTextArea1.setColumns(20);
         jTextArea1.setLineWrap(true);
         jTextArea1.setRows(5);
-        jTextArea1.setText("HISTORY:\nBrian's Brain is a cellular automaton devised by Brian Silverman in the mid 1990’s which is similar to Conway's Game of Life. \n\nRULES:\nEach cell has three possible states: on, off, and dying represented by red, black and orange respectively. Each cell is considered to have eight neighbors (Moore neighborhood). The simulation is controlled by a numeric parameter Birth Number, default value 2.  \n\nAt each simulation step:\n- An off cell turns on if it has exactly Birth Number neighbors that are on\n- An on cell always turns to dying\n- A dying cell always turns off\n\nINSTRUCTIONS:\nTo start the simulation click the start simulation button. \nThe simulation screen displays the grid at the top and simulation control parameters underneath.\nAt the bottom of the screen there are counters for each of the cell states as well as a simulation step counter.\n\nCONTROLS:\nStart/Stop button: starts or stops a simulation run. When a simulation is running the steps are automatically updated every number of milliseconds indicated by the speed slider\n\nStep button: when a simulation is not running the step button allows the user to advance the simulation step by step\n\nReset button: resets a simulation by switching all cells to off\n\nToggle Edit mode button: allows manual editing of the cells. When the button is toggled a mouse click in a cell will cycle through its possible states\n\nSet Pattern combo box: selecting a preset pattern will reset the simulation to the specified pattern.\nPatterns are described further below.\n\nSpeed Slider: controls the speed in milliseconds of a running simulation. Changes are immediately reflected in the simulation\n\nBirth Numbers slider: sets the birthNumber parameter value (2 - 7) inclusive\n\nWrapping checkbox: if checked the grid wraps around both horizontally and vertically\n\nWidth and Height fields: control the size of the simulation grid. Exceedingly large values are not recommended (above couple hundreds)\n\nApply Button: only changes in the speed slider are immediately reflected in the simulation. All other changes require clicking this button to take effect.\n\nPATTERNS:\nRandomize: randomly initializes the cells with on or off states\n\nOscillator: creates a three step oscillator as seen in the main screen\n\nLinear: creates a stable pattern (worm) that moves horizontally\n\nDiagonal: creates a cyclical pattern that moves diagonally\n\nExpanding: creates an expanding pattern that results in interesting simulations");
+        jTextArea1.setText("HISTORY:\nBrian's Brain is a cellular automaton devised by Brian Silverman in the mid 1990’s which is similar to Conway's Game of Life. \n\nRULES:\nEach cell has three possible states: on, off, and dying represented by red, black and orange respectively. Each cell is considered to have eight neighbors (Moore neighborhood). The simulation is controlled by a numeric parameter Birth Number, default value 2.  \n\nAt each simulation step:\n- An off cell turns on if it has exactly Birth Number neighbors that are on\n- An on cell always turns to dying\n- A dying cell always turns off\n\nINSTRUCTIONS:\nTo start the simulation click the start simulation button. \nThe simulation screen displays the grid at the top and simulation control parameters underneath.\nAt the bottom of the screen there are counters for each of the cell states as well as a simulation step counter.\n\nCONTROLS:\nStart/Stop button: starts or stops a simulation run. When a simulation is running the steps are automatically updated every number of milliseconds indicated by the speed slider\n\nStep button: when a simulation is not running the step button allows the user to advance the simulation step by step\n\nReset button: resets a simulation by switching all cells to off\n\nToggle Edit mode button: allows manual editing of the cells. When the button is toggled a mouse click in a cell will cycle through its possible states\n\nSet Pattern combo box: selecting a preset pattern will reset the simulation to the specified pattern.\nPatterns are described further below.\n\nSpeed Slider: controls the speed in milliseconds of a running simulation. Changes are immediately reflected in the simulation\n\nBirth Numbers slider: sets the birthNumber parameter value (0 - 8) inclusive\n\nWrapping checkbox: if checked the grid wraps around both horizontally and vertically\n\nWidth and Height fields: control the size of the simulation grid. Exceedingly large values are not recommended (above couple hundreds)\n\nApply Button: only changes in the speed slider are immediately reflected in the simulation. All other changes require clicking this button to take effect.\n\nPATTERNS:\nRandomize: randomly initializes the cells with on or off states\n\nOscillator: creates a three step oscillator as seen in the main screen\n\nLinear: creates a stable pattern (worm) that moves horizontally\n\nDiagonal: creates a cyclical pattern that moves diagonally\n\nExpanding: creates an expanding pattern that results in interesting simulations");
         jTextArea1.setWrapStyleWord(true);
         jScrollPane1.setViewportView(jTextArea1);
 
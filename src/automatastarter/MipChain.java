@@ -0,0 +1,131 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package automatastarter;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.IndexColorModel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Chain of smaller and smaller copies of the one pixel per cell image, each
+ * pixel of a level covering a 2x2 block of the level below. A block shows ON
+ * if any of its cells is ON, otherwise DYING if any is DYING, so a lone live
+ * cell stays visible however far the grid is zoomed out.
+ * Levels are updated only where tiles changed
+ * @author paul
+ */
+class MipChain {
+    // State shown for a block holding both states, ON wins over DYING and DYING over OFF
+    private static final byte[] STRONGER = new byte[9];
+
+    static {
+        for (int a = 0; a < 3; a++) {
+            for (int b = 0; b < 3; b++) {
+                STRONGER[a * 3 + b] = (byte) ((a == Brain.ON || b == Brain.ON) ? Brain.ON
+                        : (a == Brain.DYING || b == Brain.DYING) ? Brain.DYING : Brain.OFF);
+            }
+        }
+    }
+
+    // Initialise variables
+    private final List<BufferedImage> levels = new ArrayList<>();
+
+    /**
+     * Constructor, creates all levels above a base image and fills them in
+     * @param base the image with one pixel per cell, level 0
+     */
+    MipChain(BufferedImage base) {
+        IndexColorModel palette = (IndexColorModel) base.getColorModel();
+        levels.add(base);
+        int width = base.getWidth();
+        int height = base.getHeight();
+        while (width > 1 || height > 1) {
+            width = (width + 1) / 2;
+            height = (height + 1) / 2;
+            levels.add(new BufferedImage(width, height, BufferedImage.TYPE_BYTE_INDEXED, palette));
+        }
+        rebuild();
+    }
+
+    /**
+     * Returns a level of the chain
+     * @param level 0 for the base image, each level halves the size
+     * @return the image of the level, or the smallest one if there are fewer levels
+     */
+    BufferedImage level(int level) {
+        return levels.get(Math.min(level, levels.size() - 1));
+    }
+
+    /**
+     * Returns the number of levels including the base image
+     * @return the number of levels
+     */
+    int getLevelCount() {
+        return levels.size();
+    }
+
+    /**
+     * Recomputes every level from the base image
+     */
+    void rebuild() {
+        for (int k = 1; k < levels.size(); k++) {
+            reduce(k, 0, 0, levels.get(k).getWidth(), levels.get(k).getHeight());
+        }
+    }
+
+    /**
+     * Recomputes the parts of every level covering the changed tiles of the base image
+     * @param dirty the changed tiles
+     */
+    void update(DirtyTiles dirty) {
+        if (dirty.isEmpty()) {
+            return;
+        }
+        for (int row = 0; row < dirty.getRows(); row++) {
+            for (int column = 0; column < dirty.getColumns(); column++) {
+                if (dirty.isDirty(row, column)) {
+                    int left = column * DirtyTiles.TILE;
+                    int top = row * DirtyTiles.TILE;
+                    // The tile shrinks by half at every level, down to a single pixel
+                    for (int k = 1; k < levels.size(); k++) {
+                        int right = ((left + DirtyTiles.TILE) >> k) + 1;
+                        int bottom = ((top + DirtyTiles.TILE) >> k) + 1;
+                        BufferedImage image = levels.get(k);
+                        reduce(k, left >> k, top >> k, Math.min(right, image.getWidth()), Math.min(bottom, image.getHeight()));
+                    }
+                }
+            }
+        }
+    }
+
+    // Computes the pixels of a level in the given rectangle from the level below
+    private void reduce(int level, int fromX, int fromY, int toX, int toY) {
+        BufferedImage below = levels.get(level - 1);
+        int belowWidth = below.getWidth();
+        int belowHeight = below.getHeight();
+        byte[] source = pixels(below);
+        int width = levels.get(level).getWidth();
+        byte[] target = pixels(levels.get(level));
+        for (int y = fromY; y < toY; y++) {
+            int y0 = 2 * y;
+            // The last row and column of an odd sized level cover a single pixel
+            int y1 = Math.min(y0 + 1, belowHeight - 1);
+            for (int x = fromX; x < toX; x++) {
+                int x0 = 2 * x;
+                int x1 = Math.min(x0 + 1, belowWidth - 1);
+                byte top = STRONGER[source[y0 * belowWidth + x0] * 3 + source[y0 * belowWidth + x1]];
+                byte bottom = STRONGER[source[y1 * belowWidth + x0] * 3 + source[y1 * belowWidth + x1]];
+                target[y * width + x] = STRONGER[top * 3 + bottom];
+            }
+        }
+    }
+
+    // Returns the pixel array of an indexed image
+    private static byte[] pixels(BufferedImage image) {
+        return ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package automatastarter;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The patterns shipped in the patterns directory next to this class.
+ * The directory holds one RLE file per pattern and index.txt listing the
+ * files in the order they are offered to the user, adding a pattern only
+ * takes a new file and a line in the index
+ * @author paul
+ */
+public class PatternLibrary {
+    // Directory of the patterns, relative to this class
+    private static final String DIRECTORY = "patterns/";
+
+    // Initialise variables
+    private final List<String> files = new ArrayList<>();
+    private final List<String> names = new ArrayList<>();
+
+    /**
+     * Constructor, reads the index and the name of every pattern
+     */
+    public PatternLibrary() {
+        try (BufferedReader index = open("index.txt")) {
+            String file;
+            while ((file = index.readLine()) != null) {
+                file = file.trim();
+                if (file.isEmpty() || file.startsWith("#")) {
+                    continue;
+                }
+                // Only the header is read, the cells are read when the pattern is loaded
+                try (BufferedReader in = open(file)) {
+                    RleFormat.Header header = RleFormat.readHeader(in);
+                    files.add(file);
+                    names.add(header.name != null ? header.name : file.replaceFirst("\\.rle$", ""));
+                }
+            }
+        } catch (IOException e) {
+            // The library is part of the program, a broken one is a build error
+            throw new UncheckedIOException("Could not read the pattern library", e);
+        }
+    }
+
+    /**
+     * Returns the names of the patterns in library order
+     * @return the pattern names
+     */
+    public List<String> getNames() {
+        return Collections.unmodifiableList(names);
+    }
+
+    /**
+     * Returns the position of a pattern
+     * @param name the pattern name or file name, ignoring case
+     * @return the position, or -1 if there is no such pattern
+     */
+    public int indexOf(String name) {
+        for (int k = 0; k < names.size(); k++) {
+            if (names.get(k).equalsIgnoreCase(name) || files.get(k).equalsIgnoreCase(name)
+                    || files.get(k).equalsIgnoreCase(name + ".rle")) {
+                return k;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Clears the grid of an engine and places a pattern at its center
+     * @param index the position of the pattern
+     * @param brain the engine
+     * @return the header of the pattern
+     * @throws IOException if the pattern cannot be read or its rule does not match the engine
+     */
+    public RleFormat.Header load(int index, SimulationEngine brain) throws IOException {
+        try (Reader in = open(files.get(index))) {
+            return RleFormat.load(in, brain);
+        }
+    }
+
+    /**
+     * Places a pattern at the center of a grid and follows its rule, in a new
+     * engine of the same type and size when the rule has another birth number
+     * @param index the position of the pattern
+     * @param brain the engine
+     * @return the engine holding the pattern
+     * @throws IOException if the pattern cannot be read
+     */
+    public SimulationEngine loadWithRule(int index, SimulationEngine brain) throws IOException {
+        try (Reader in = open(files.get(index))) {
+            return RleFormat.loadWithRule(in, brain);
+        }
+    }
+
+    // Opens a file of the library
+    private static BufferedReader open(String file) throws IOException {
+        InputStream in = PatternLibrary.class.getResourceAsStream(DIRECTORY + file);
+        if (in == null) {
+            throw new IOException("Missing pattern file " + file);
+        }
+        return new BufferedReader(new InputStreamReader(in, StandardCharsets.US_ASCII));
+    }
+}
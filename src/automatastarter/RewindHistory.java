@@ -0,0 +1,264 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package automatastarter;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Keeps the recent generations of a grid in memory so the simulation can be
+ * stepped back, and edits undone.
+ * Every generation is stored as the XOR of its cells with the generation
+ * before it, holding only the runs of cells that changed. Every few
+ * generations a keyframe is stored instead, the XOR with an empty grid, and
+ * a keyframe with the deltas following it make a segment. When the history
+ * grows over its byte budget the oldest segments are dropped.
+ * Stepping back from the newest generation undoes its XOR, and when a
+ * keyframe is dropped the generation before it is rebuilt from the keyframe
+ * of the previous segment
+ * @author paul
+ */
+public class RewindHistory {
+    // Generations between two keyframes by default
+    public static final int DEFAULT_KEYFRAME_INTERVAL = 256;
+    // Bytes counted for every stored generation besides its data
+    private static final int ENTRY_OVERHEAD = 32;
+
+    // A stored generation, its XOR with the generation before it or with an empty grid
+    private static final class Entry {
+        final int step;
+        final byte[] data;
+
+        Entry(int step, byte[] data) {
+            this.step = step;
+            this.data = data;
+        }
+    }
+
+    // Initialise variables
+    private final long byteBudget;
+    private final int keyframeInterval;
+    // Oldest segment first, every segment starts with its keyframe
+    private final ArrayDeque<List<Entry>> segments = new ArrayDeque<>();
+    private long bytes;
+    private long newestSegmentBytes;
+    // The newest generation stored and the grid it belongs to
+    private byte[] states = new byte[0];
+    private int width;
+    private int height;
+    // The generation being recorded, and the delta being encoded
+    private byte[] current = new byte[0];
+    private byte[] encoded = new byte[1024];
+    private int length;
+
+    /**
+     * Constructor
+     * @param byteBudget the most bytes the stored generations may take, the newest segment is always kept
+     * @param keyframeInterval the number of generations between two keyframes
+     */
+    public RewindHistory(long byteBudget, int keyframeInterval) {
+        this.byteBudget = byteBudget;
+        this.keyframeInterval = Math.max(keyframeInterval, 1);
+    }
+
+    /**
+     * Stores the current generation of an engine, call it after every change of the grid.
+     * A grid of another size starts a new history
+     * @param brain the engine
+     */
+    public void record(SimulationEngine brain) {
+        if (brain.getWidth() != width || brain.getHeight() != height) {
+            width = brain.getWidth();
+            height = brain.getHeight();
+            states = new byte[width * height];
+            current = new byte[states.length];
+            clear();
+        }
+        brain.copyStates(current);
+        List<Entry> segment = segments.peekLast();
+        /* A new segment starts every few generations, and when the newest one takes
+           half the budget so that dropping the older ones makes room again
+        */
+        boolean keyframe = segment == null || segment.size() >= keyframeInterval
+                || newestSegmentBytes > byteBudget / 2;
+        if (keyframe) {
+            Arrays.fill(states, (byte) 0);
+        }
+        encode(states, current);
+        if (!keyframe && length == 0 && segment.get(segment.size() - 1).step == brain.getStepCount()) {
+            // Nothing changed, an edit that did nothing is not worth an undo
+            return;
+        }
+        Entry entry = new Entry(brain.getStepCount(), Arrays.copyOf(encoded, length));
+        if (keyframe) {
+            segment = new ArrayList<>();
+            segments.addLast(segment);
+            newestSegmentBytes = 0;
+        }
+        segment.add(entry);
+        newestSegmentBytes += size(entry);
+        bytes += size(entry);
+        byte[] temp = states;
+        states = current;
+        current = temp;
+
+        // Drop the oldest segments, their deltas are useless without their keyframe
+        while (bytes > byteBudget && segments.size() > 1) {
+            for (Entry dropped : segments.pollFirst()) {
+                bytes -= size(dropped);
+            }
+        }
+    }
+
+    /**
+     * Puts the engine back to the generation stored before the newest one and forgets the newest one
+     * @param brain the engine, holding the newest generation stored
+     * @return false if there is no earlier generation to go back to
+     */
+    public boolean stepBack(SimulationEngine brain) {
+        if (segments.isEmpty() || (segments.size() == 1 && segments.peekLast().size() == 1)
+                || brain.getWidth() != width || brain.getHeight() != height) {
+            return false;
+        }
+        List<Entry> segment = segments.peekLast();
+        Entry newest = segment.remove(segment.size() - 1);
+        bytes -= size(newest);
+        newestSegmentBytes -= size(newest);
+        if (segment.isEmpty()) {
+            // The keyframe went, rebuild the end of the previous segment from its own keyframe
+            segments.pollLast();
+            segment = segments.peekLast();
+            Arrays.fill(states, (byte) 0);
+            newestSegmentBytes = 0;
+            for (Entry entry : segment) {
+                apply(entry.data, states);
+                newestSegmentBytes += size(entry);
+            }
+        } else {
+            // The XOR that led to the newest generation also leads back from it
+            apply(newest.data, states);
+        }
+
+        // Only the cells that differ are set, so the engine keeps its counters in sync
+        brain.copyStates(current);
+        for (int k = 0; k < states.length; k++) {
+            if (states[k] != current[k]) {
+                brain.setState(k / width, k % width, states[k]);
+            }
+        }
+        brain.setStepCount(segment.get(segment.size() - 1).step);
+        return true;
+    }
+
+    /**
+     * Forgets every stored generation
+     */
+    public void clear() {
+        segments.clear();
+        bytes = 0;
+        newestSegmentBytes = 0;
+    }
+
+    /**
+     * Returns the number of stored generations
+     * @return the number of generations
+     */
+    public int size() {
+        int size = 0;
+        for (List<Entry> segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    /**
+     * Returns the memory taken by the stored generations
+     * @return the number of bytes
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    // Returns the bytes counted for a stored generation
+    private static long size(Entry entry) {
+        return entry.data.length + ENTRY_OVERHEAD;
+    }
+
+    /* Encodes the XOR of two generations as runs of changed cells: the number of equal
+        cells before the run and the length of the run, both variable length numbers,
+        followed by the XOR of every cell in the run
+    */
+    private void encode(byte[] from, byte[] to) {
+        length = 0;
+        int cells = from.length;
+        int last = 0;
+        int k = 0;
+        while (k < cells) {
+            // Equal stretches are skipped by a vectorized comparison
+            int gap = Arrays.mismatch(from, k, cells, to, k, cells);
+            if (gap < 0) {
+                break;
+            }
+            k += gap;
+            int end = k + 1;
+            while (end < cells && from[end] != to[end]) {
+                end++;
+            }
+            ensure(10 + 5 + end - k);
+            putVarint(k - last);
+            putVarint(end - k);
+            for (int c = k; c < end; c++) {
+                encoded[length++] = (byte) (from[c] ^ to[c]);
+            }
+            last = end;
+            k = end;
+        }
+    }
+
+    // Applies an encoded XOR to a generation
+    private static void apply(byte[] data, byte[] states) {
+        int position = 0;
+        int cell = 0;
+        while (position < data.length) {
+            int gap = 0;
+            int shift = 0;
+            int b;
+            do {
+                b = data[position++];
+                gap |= (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            int run = 0;
+            shift = 0;
+            do {
+                b = data[position++];
+                run |= (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            cell += gap;
+            for (int end = cell + run; cell < end; cell++) {
+                states[cell] ^= data[position++];
+            }
+        }
+    }
+
+    // Makes room for more bytes in the delta being encoded
+    private void ensure(int more) {
+        if (length + more > encoded.length) {
+            encoded = Arrays.copyOf(encoded, Math.max(encoded.length * 2, length + more));
+        }
+    }
+
+    // Adds a variable length number to the delta being encoded
+    private void putVarint(int value) {
+        while ((value & ~0x7F) != 0) {
+            encoded[length++] = (byte) (value & 0x7F | 0x80);
+            value >>>= 7;
+        }
+        encoded[length++] = (byte) value;
+    }
+}
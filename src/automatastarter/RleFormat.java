@@ -0,0 +1,404 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package automatastarter;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Reads and writes patterns in the run length encoded format used by Golly.
+ * A file starts with optional comment lines, "#N" giving the pattern name,
+ * then a line such as "x = 4, y = 4, rule = B2/S/3" giving the size and the
+ * Brian's Brain rule: born with 2 ON neighbors, no survivors, 3 states.
+ * The cells follow as runs of "." (OFF), "A" (ON) and "B" (DYING), "$" ends
+ * a row and "!" ends the pattern. Two state patterns using "b" and "o" are
+ * read as well.
+ * The cells are read one character at a time and only the runs of live
+ * cells that land in the grid are kept, then set once the whole pattern has
+ * been found valid, so an invalid pattern leaves the grid untouched without
+ * a copy of the grid being made
+ * @author paul
+ */
+public final class RleFormat {
+    // Longest line written, as in the files written by Golly
+    private static final int LINE_LENGTH = 70;
+    // Rule of a generations automaton with one birth number, no survivors and 3 states, also in the older S/B/C order
+    private static final Pattern RULE = Pattern.compile("(?i)B(\\d?)/S/C?3|/(\\d?)/3|BriansBrain");
+
+    /**
+     * What the header of a pattern file says about the pattern
+     */
+    public static final class Header {
+        /** The name from the "#N" line, or null if there is none */
+        public final String name;
+        /** The width of the pattern */
+        public final int width;
+        /** The height of the pattern */
+        public final int height;
+        /** The birth number of the rule, or -1 if the file has no rule */
+        public final int birthNumber;
+
+        Header(String name, int width, int height, int birthNumber) {
+            this.name = name;
+            this.width = width;
+            this.height = height;
+            this.birthNumber = birthNumber;
+        }
+    }
+
+    // Runs of live cells decoded from a pattern, four ints each: grid row, first and end column, state
+    private static final class CellRuns {
+        int[] data = new int[64];
+        int length;
+
+        void add(int i, int from, int to, int state) {
+            if (length + 4 > data.length) {
+                data = Arrays.copyOf(data, data.length * 2);
+            }
+            data[length++] = i;
+            data[length++] = from;
+            data[length++] = to;
+            data[length++] = state;
+        }
+
+        void setIn(SimulationEngine brain) {
+            for (int k = 0; k < length; k += 4) {
+                for (int j = data[k + 1]; j < data[k + 2]; j++) {
+                    brain.setState(data[k], j, data[k + 3]);
+                }
+            }
+        }
+    }
+
+    private RleFormat() {
+    }
+
+    /**
+     * Clears the grid and places a pattern at its center, cells falling
+     * outside the grid are dropped. The counters are kept up to date by the engine.
+     * The whole pattern is checked before the grid is cleared, so an invalid
+     * pattern leaves the grid as it was
+     * @param in the pattern text, read up to the "!" only
+     * @param brain the engine receiving the pattern
+     * @return the header of the pattern
+     * @throws IOException if the text cannot be read, is not a valid pattern
+     *                     or has a rule with another birth number than the engine
+     */
+    public static Header load(Reader in, SimulationEngine brain) throws IOException {
+        if (!(in instanceof BufferedReader)) {
+            in = new BufferedReader(in);
+        }
+        Header header = readHeader(in);
+        if (header.birthNumber >= 0 && header.birthNumber != brain.getBirthNumber()) {
+            throw new IOException("Pattern rule " + rule(header.birthNumber) + " does not match the birth number "
+                    + brain.getBirthNumber() + " of the grid");
+        }
+        CellRuns runs = decodeCentered(in, header, brain);
+        brain.clear();
+        runs.setIn(brain);
+        return header;
+    }
+
+    /**
+     * Places a pattern at the center of a grid and follows its rule. When the
+     * rule has another birth number than the engine the pattern is placed in a
+     * new engine of the same type and size instead, and the given one is left untouched
+     * @param in the pattern text, read up to the "!" only
+     * @param brain the engine receiving the pattern
+     * @return the engine holding the pattern, the given one unless the rule differs
+     * @throws IOException if the text cannot be read, is not a valid pattern
+     *                     or has a rule the type of engine cannot run
+     */
+    public static SimulationEngine loadWithRule(Reader in, SimulationEngine brain) throws IOException {
+        if (!(in instanceof BufferedReader)) {
+            in = new BufferedReader(in);
+        }
+        Header header = readHeader(in);
+        EngineType type = EngineType.of(brain);
+        boolean otherRule = header.birthNumber >= 0 && header.birthNumber != brain.getBirthNumber();
+        if (otherRule && !type.supportsBirthNumber(header.birthNumber)) {
+            throw new IOException("Pattern rule " + rule(header.birthNumber) + " cannot be run by the "
+                    + type + " engine");
+        }
+        // The new engine has the same size, so the cells can be decoded for it before it is created
+        CellRuns runs = decodeCentered(in, header, brain);
+        if (otherRule) {
+            brain = type.create(brain.getWidth(), brain.getHeight(), header.birthNumber, brain.isWrapping());
+        } else {
+            brain.clear();
+        }
+        runs.setIn(brain);
+        return brain;
+    }
+
+    // Decodes the cells of a pattern placed at the center of a grid, without changing the grid
+    private static CellRuns decodeCentered(Reader in, Header header, SimulationEngine brain) throws IOException {
+        return decode(in, header, brain, (brain.getHeight() - header.height) / 2, (brain.getWidth() - header.width) / 2);
+    }
+
+    /**
+     * Reads the comment lines and the size line at the start of a pattern
+     * @param in the pattern text, left at the first cell
+     * @return the header
+     * @throws IOException if the text cannot be read or has no size line
+     */
+    public static Header readHeader(Reader in) throws IOException {
+        String name = null;
+        String line;
+        while ((line = readLine(in)) != null) {
+            line = line.trim();
+            if (line.startsWith("#N")) {
+                name = line.substring(2).trim();
+            } else if (!line.isEmpty() && !line.startsWith("#")) {
+                return parseSize(line, name);
+            }
+        }
+        throw new IOException("Pattern has no size line");
+    }
+
+    // Reads the "x = m, y = n, rule = ..." line
+    private static Header parseSize(String line, String name) throws IOException {
+        int width = -1;
+        int height = -1;
+        int birthNumber = -1;
+        for (String field : line.split(",")) {
+            String[] parts = field.split("=", 2);
+            if (parts.length != 2) {
+                throw new IOException("Invalid size line: " + line);
+            }
+            String key = parts[0].trim();
+            String value = parts[1].trim();
+            try {
+                switch (key) {
+                    case "x": width = Integer.parseInt(value); break;
+                    case "y": height = Integer.parseInt(value); break;
+                    case "rule": birthNumber = parseRule(value); break;
+                    default: // Other fields are not needed
+                }
+            } catch (NumberFormatException e) {
+                throw new IOException("Invalid size line: " + line);
+            }
+        }
+        if (width < 0 || height < 0) {
+            throw new IOException("Invalid size line: " + line);
+        }
+        return new Header(name, width, height, birthNumber);
+    }
+
+    // Returns the birth number of a Brian's Brain rule
+    private static int parseRule(String rule) throws IOException {
+        Matcher matcher = RULE.matcher(rule);
+        if (!matcher.matches()) {
+            throw new IOException("Not a Brian's Brain rule: " + rule);
+        }
+        String birth = matcher.group(1) != null ? matcher.group(1) : matcher.group(2);
+        // The original Brian's Brain is born with 2 neighbors
+        return birth == null ? 2 : birth.isEmpty() ? 0 : Integer.parseInt(birth);
+    }
+
+    /**
+     * Reads the cells of a pattern after its header and sets them in the engine,
+     * which is not changed if the cells are invalid
+     * @param in the pattern text, left after the "!"
+     * @param header the header read before
+     * @param brain the engine receiving the cells
+     * @param top the grid row of the first pattern row
+     * @param left the grid column of the first pattern column
+     * @throws IOException if the text cannot be read or holds invalid cells
+     */
+    public static void readCells(Reader in, Header header, SimulationEngine brain, int top, int left) throws IOException {
+        decode(in, header, brain, top, left).setIn(brain);
+    }
+
+    // Decodes the cells of a pattern into the runs of live cells that land in the grid
+    private static CellRuns decode(Reader in, Header header, SimulationEngine brain, int top, int left)
+            throws IOException {
+        CellRuns runs = new CellRuns();
+        int row = 0;
+        int column = 0;
+        int count = 0;
+        int c;
+        while ((c = in.read()) != -1 && c != '!') {
+            if (c >= '0' && c <= '9') {
+                count = count * 10 + (c - '0');
+                if (count > 1 << 28) {
+                    throw new IOException("Run too long in pattern");
+                }
+                continue;
+            }
+            int run = Math.max(count, 1);
+            count = 0;
+            switch (c) {
+                case '.':
+                case 'b':
+                    column += run;
+                    break;
+                case 'A':
+                case 'o':
+                    place(runs, brain, header, top, left, row, column, run, Brain.ON);
+                    column += run;
+                    break;
+                case 'B':
+                    place(runs, brain, header, top, left, row, column, run, Brain.DYING);
+                    column += run;
+                    break;
+                case '$':
+                    row += run;
+                    column = 0;
+                    break;
+                case '#':
+                    // Comments may also follow the cells, skip the rest of the line
+                    readLine(in);
+                    break;
+                default:
+                    if (!Character.isWhitespace(c)) {
+                        throw new IOException("Unsupported cell '" + (char) c + "' in pattern");
+                    }
+            }
+        }
+        return runs;
+    }
+
+    // Keeps a run of cells in one row of the pattern, clipped to the grid
+    private static void place(CellRuns runs, SimulationEngine brain, Header header, int top, int left, int row,
+            int column, int run, int state) throws IOException {
+        if (row >= header.height || column + run > header.width) {
+            throw new IOException("Pattern is larger than its size line");
+        }
+        int i = top + row;
+        if (i < 0 || i >= brain.getHeight()) {
+            return;
+        }
+        int from = Math.max(left + column, 0);
+        int to = Math.min(left + column + run, brain.getWidth());
+        if (from < to) {
+            runs.add(i, from, to, state);
+        }
+    }
+
+    /**
+     * Writes the live cells of an engine as a pattern, cropped to the smallest rectangle holding them
+     * @param brain the engine
+     * @param out receives the pattern text, it is flushed but not closed
+     * @param name the name written on the "#N" line, or null for none
+     * @throws IOException if the text cannot be written
+     */
+    public static void save(SimulationEngine brain, Writer out, String name) throws IOException {
+        // Find the rectangle holding the live cells
+        int top = Integer.MAX_VALUE;
+        int bottom = -1;
+        int left = Integer.MAX_VALUE;
+        int right = -1;
+        for (int i = 0; i < brain.getHeight(); i++) {
+            for (int j = 0; j < brain.getWidth(); j++) {
+                if (brain.getState(i, j) != Brain.OFF) {
+                    top = Math.min(top, i);
+                    bottom = i;
+                    left = Math.min(left, j);
+                    right = Math.max(right, j);
+                }
+            }
+        }
+
+        BufferedWriter writer = new BufferedWriter(out);
+        if (name != null) {
+            writer.write("#N " + name);
+            writer.newLine();
+        }
+        int width = bottom < 0 ? 0 : right - left + 1;
+        int height = bottom < 0 ? 0 : bottom - top + 1;
+        writer.write("x = " + width + ", y = " + height + ", rule = " + rule(brain.getBirthNumber()));
+        writer.newLine();
+
+        RunWriter runs = new RunWriter(writer);
+        int emptyRows = 0;
+        for (int i = top; i <= bottom; i++) {
+            int state = Brain.OFF;
+            int run = 0;
+            for (int j = left; j <= right; j++) {
+                int next = brain.getState(i, j);
+                if (next != state && run > 0) {
+                    emptyRows = runs.endRows(emptyRows);
+                    runs.put(run, state);
+                    run = 0;
+                }
+                state = next;
+                run++;
+            }
+            if (state != Brain.OFF) {
+                // Trailing OFF cells of a row are left out
+                emptyRows = runs.endRows(emptyRows);
+                runs.put(run, state);
+            }
+            if (i < bottom) {
+                emptyRows++;
+            }
+        }
+        runs.put(1, -1);
+        writer.newLine();
+        writer.flush();
+    }
+
+    /**
+     * Returns the rule string of a birth number
+     * @param birthNumber the number of ON neighbors that turns an OFF cell on
+     * @return the rule, for example "B2/S/3"
+     */
+    public static String rule(int birthNumber) {
+        return "B" + birthNumber + "/S/3";
+    }
+
+    // Reads one line, without its end of line, or returns null at the end of the text
+    private static String readLine(Reader in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int c;
+        while ((c = in.read()) != -1 && c != '\n') {
+            if (c != '\r') {
+                line.append((char) c);
+            }
+        }
+        return (c == -1 && line.length() == 0) ? null : line.toString();
+    }
+
+    // Writes runs of cells, wrapping the lines before they get too long
+    private static final class RunWriter {
+        private static final char[] SYMBOLS = {'.', 'A', 'B'};
+        private final BufferedWriter out;
+        private int length;
+
+        RunWriter(BufferedWriter out) {
+            this.out = out;
+        }
+
+        // Writes the row ends that are still pending and returns 0
+        int endRows(int rows) throws IOException {
+            if (rows > 0) {
+                write((rows > 1 ? String.valueOf(rows) : "") + '$');
+            }
+            return 0;
+        }
+
+        // Writes a run of a state, -1 for the end of the pattern
+        void put(int run, int state) throws IOException {
+            char symbol = state < 0 ? '!' : SYMBOLS[state];
+            write((run > 1 ? String.valueOf(run) : "") + symbol);
+        }
+
+        private void write(String token) throws IOException {
+            if (length + token.length() > LINE_LENGTH) {
+                out.newLine();
+                length = 0;
+            }
+            out.write(token);
+            length += token.length();
+        }
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package automatastarter;
+
+/**
+ * A backend that advances a Brian's Brain simulation.
+ * Cell states are Brain.OFF, Brain.ON and Brain.DYING, and Brain is the
+ * reference implementation every other engine must agree with
+ * @author paul
+ */
+public interface SimulationEngine {
+
+    /**
+     * Advance the simulation by one step
+     */
+    void update();
+
+    /**
+     * Advance the simulation by the given number of steps
+     * @param generations the number of steps
+     */
+    default void stepN(int generations) {
+        for (int k = 0; k < generations; k++) {
+            update();
+        }
+    }
+
+    /**
+     * Returns the state of a given cell
+     * @param i the cell row
+     * @param j the cell column
+     * @return Brain.OFF, Brain.ON or Brain.DYING
+     */
+    int getState(int i, int j);
+
+    /**
+     * Sets the state of a given cell and keeps the counters in sync
+     * @param i the cell row
+     * @param j the cell column
+     * @param state Brain.OFF, Brain.ON or Brain.DYING
+     */
+    void setState(int i, int j, int state);
+
+    /**
+     * Copies the state of every cell into an array in row order
+     * @param states receives width * height states, Brain.OFF, Brain.ON or Brain.DYING
+     */
+    default void copyStates(byte[] states) {
+        int width = getWidth();
+        for (int i = 0; i < getHeight(); i++) {
+            for (int j = 0; j < width; j++) {
+                states[i * width + j] = (byte) getState(i, j);
+            }
+        }
+    }
+
+    /**
+     * Adds the tiles that changed since the last call to a set and forgets them.
+     * Engines that do not track their changes mark every tile
+     * @param dirty the set receiving the changed tiles, sized for this grid
+     */
+    default void collectChanges(DirtyTiles dirty) {
+        dirty.markAll();
+    }
+
+    /**
+     * Computes the hashes of the current generation used to detect cycles.
+     * Engines that keep them up to date while stepping can skip reading the grid
+     * @param hasher the shape hash of a grid of this size
+     * @param hash receives the Zobrist hash, the shape hash and the column and
+     *             row of the top left corner of the live cells
+     */
+    default void hashState(StateHash hasher, long[] hash) {
+        hasher.scan(this, hash);
+    }
+
+    /**
+     * Cycles through the states of a given cell
+     * @param i the cell row
+     * @param j the cell column
+     */
+    default void switchState(int i, int j) {
+        // OFF becomes ON, ON becomes DYING and DYING becomes OFF
+        setState(i, j, (getState(i, j) + 1) % 3);
+    }
+
+    /**
+     * Reset all cells to off state
+     */
+    void clear();
+
+    /**
+     * Initialize the simulation with a random pattern
+     */
+    void randomize();
+
+    /**
+     * Returns the width of the grid
+     * @return the width of the grid
+     */
+    int getWidth();
+
+    /**
+     * Returns the height of the grid
+     * @return the height of the grid
+     */
+    int getHeight();
+
+    /**
+     * Returns the number of cells with off status
+     * @return the number of off cells
+     */
+    int getOffCount();
+
+    /**
+     * Returns the number of cells with on status
+     * @return the number of on cells
+     */
+    int getOnCount();
+
+    /**
+     * Returns the number of cells with dying status
+     * @return the number of dying cells
+     */
+    int getDyingCount();
+
+    /**
+     * Returns the current simulation step
+     * @return the simulation step
+     */
+    int getStepCount();
+
+    /**
+     * Sets the simulation step, for a grid restored from a file
+     * @param stepCount the simulation step
+     */
+    void setStepCount(int stepCount);
+
+    /**
+     * Returns the number of ON neighbors that turns an OFF cell on
+     * @return the birth number
+     */
+    int getBirthNumber();
+
+    /**
+     * Returns whether the grid wraps around both horizontally and vertically
+     * @return true if the grid wraps
+     */
+    boolean isWrapping();
+}
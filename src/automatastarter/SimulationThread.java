@@ -0,0 +1,200 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package automatastarter;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import javax.swing.SwingUtilities;
+
+/**
+ * Advances an engine on its own thread so a slow generation never blocks the
+ * Event Dispatch Thread. Completed generations are handed to the renderer
+ * through three snapshots: the simulation writes the back one, the renderer
+ * reads the front one, and the newest completed generation waits in the
+ * middle. Both sides only swap references, so neither ever waits for the other.
+ * The engine belongs to this thread from start until the stopped callback runs.
+ * In turbo mode the engine runs at a target number of generations per second
+ * and only about one generation per frame is copied out for the renderer.
+ * With a cycle detector the thread stops by itself once the grid dies out or repeats,
+ * and with a rewind history every generation is stored so it can be stepped back to
+ * @author paul
+ */
+public class SimulationThread implements Runnable {
+    // Time between two frames of the renderer, about 60 frames per second
+    public static final long FRAME_NANOS = TimeUnit.SECONDS.toNanos(1) / 60;
+    // How far the simulation may fall behind its target before it gives up catching up
+    private static final long MAX_LAG_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    // Shortest pause worth sleeping for
+    private static final long MIN_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    // Initialise variables
+    private final SimulationEngine brain;
+    private final Runnable onStopped;
+    private final AtomicReference<Snapshot> middle;
+    // Only touched by the simulation thread
+    private Snapshot back;
+    // Only touched by the renderer
+    private Snapshot front;
+    // Time between two generations
+    private volatile long intervalNanos;
+    private volatile boolean running;
+    // Number of snapshots published so far
+    private long published;
+    private Thread thread;
+    // Watches every generation when not null, only touched by the simulation thread while running
+    private CycleDetector detector;
+    // Stores every generation when not null, only touched by the simulation thread while running
+    private RewindHistory history;
+
+    /**
+     * Constructor, prepares a simulation thread for an engine
+     * @param brain the engine to advance
+     * @param delay the pause between two generations in milliseconds
+     * @param onStopped called on the Event Dispatch Thread once the thread
+     *                  has finished and the engine can be used again
+     */
+    public SimulationThread(SimulationEngine brain, int delay, Runnable onStopped) {
+        this.brain = brain;
+        this.onStopped = onStopped;
+        setDelay(delay);
+        // The renderer starts with the current generation
+        front = new Snapshot(brain.getWidth(), brain.getHeight());
+        front.capture(brain, 0);
+        back = new Snapshot(brain.getWidth(), brain.getHeight());
+        middle = new AtomicReference<>(new Snapshot(brain.getWidth(), brain.getHeight()));
+    }
+
+    /**
+     * Starts advancing the engine
+     */
+    public void start() {
+        running = true;
+        thread = new Thread(this, "Simulation");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Asks the thread to stop after the current generation, without waiting for it
+     */
+    public void stop() {
+        running = false;
+        LockSupport.unpark(thread);
+    }
+
+    /**
+     * Returns whether the thread has been started and not asked to stop
+     * @return true if the simulation is running
+     */
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Changes the pause between two generations
+     * @param delay the pause in milliseconds
+     */
+    public void setDelay(int delay) {
+        intervalNanos = TimeUnit.MILLISECONDS.toNanos(delay);
+    }
+
+    /**
+     * Runs the engine at a target rate instead of pausing between generations,
+     * many generations may then pass between two frames
+     * @param generationsPerSecond the target rate
+     */
+    public void setTargetRate(double generationsPerSecond) {
+        intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / Math.max(generationsPerSecond, 1));
+    }
+
+    /**
+     * Makes the thread stop once the detector finds the grid extinct, still or periodic.
+     * Must be called before start, the detector can be read again once the thread has stopped
+     * @param detector the detector, or null to run until stopped
+     */
+    public void setCycleDetector(CycleDetector detector) {
+        this.detector = detector;
+    }
+
+    /**
+     * Returns the cycle detector watching the simulation
+     * @return the detector, or null if there is none
+     */
+    public CycleDetector getCycleDetector() {
+        return detector;
+    }
+
+    /**
+     * Stores every generation in a rewind history.
+     * Must be called before start, the history can be used again once the thread has stopped
+     * @param history the history, or null to store nothing
+     */
+    public void setHistory(RewindHistory history) {
+        this.history = history;
+    }
+
+    /**
+     * Returns the newest completed generation. Must only be called by the renderer
+     * and the snapshot stays valid until the next call
+     * @return the newest snapshot
+     */
+    public Snapshot latest() {
+        if (middle.get().fresh) {
+            // Take the newest generation and give our old snapshot back to be rewritten
+            Snapshot newest = middle.getAndSet(front);
+            newest.fresh = false;
+            front = newest;
+        }
+        return front;
+    }
+
+    @Override
+    public void run() {
+        try {
+            long next = System.nanoTime();
+            long publishTime = next - FRAME_NANOS;
+            if (detector != null) {
+                detector.observe(brain);
+            }
+            while (running) {
+                brain.update();
+                if (history != null) {
+                    history.record(brain);
+                }
+                if (detector != null && detector.observe(brain) != CycleDetector.Status.RUNNING) {
+                    // Nothing new can happen, stop on this generation
+                    running = false;
+                }
+                long interval = intervalNanos;
+                long now = System.nanoTime();
+                // Copying a generation nobody will see is wasted work, so publish at most once per frame
+                if (interval >= FRAME_NANOS || now - publishTime >= FRAME_NANOS || !running) {
+                    back.capture(brain, ++published);
+                    // Publish the generation and take whichever snapshot is free
+                    back.fresh = true;
+                    back = middle.getAndSet(back);
+                    publishTime = now;
+                }
+
+                // Wait for the next generation, stop wakes us up early
+                next += interval;
+                if (now - next > MAX_LAG_NANOS) {
+                    // The engine cannot keep up with the target, do not try to catch up
+                    next = now;
+                }
+                // Short pauses cost more than they wait, fast targets sleep once a few generations ahead
+                if (next - now > MIN_PARK_NANOS) {
+                    while (running && next - now > 0) {
+                        LockSupport.parkNanos(this, next - now);
+                        now = System.nanoTime();
+                    }
+                }
+            }
+        } finally {
+            SwingUtilities.invokeLater(onStopped);
+        }
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package automatastarter;
+
+/**
+ * A copy of one completed generation, the cell states in row order and the
+ * counters shown in the status bar. Snapshots are reused by SimulationThread
+ * and only ever written by the thread that currently owns them
+ * @author paul
+ */
+public class Snapshot {
+    // Initialise variables
+    private final int width;
+    private final int height;
+    private final byte[] states;
+    private int onCount;
+    private int offCount;
+    private int dyingCount;
+    private int stepCount;
+    // Tiles that changed since the previous snapshot, and the position of this snapshot in that chain
+    private final DirtyTiles dirty;
+    private long sequence;
+    // True while the snapshot holds a generation the renderer has not taken yet
+    volatile boolean fresh;
+
+    /**
+     * Constructor, creates an empty snapshot for a grid of the given size
+     * @param width the width of the grid
+     * @param height the height of the grid
+     */
+    public Snapshot(int width, int height) {
+        this.width = width;
+        this.height = height;
+        states = new byte[width * height];
+        dirty = new DirtyTiles(width, height);
+    }
+
+    /**
+     * Copies the current generation of an engine into this snapshot
+     * @param brain the engine, which must have the size of this snapshot
+     * @param sequence one more than the sequence of the previous snapshot taken from the engine
+     */
+    public void capture(SimulationEngine brain, long sequence) {
+        this.sequence = sequence;
+        dirty.clear();
+        brain.collectChanges(dirty);
+        brain.copyStates(states);
+        onCount = brain.getOnCount();
+        offCount = brain.getOffCount();
+        dyingCount = brain.getDyingCount();
+        stepCount = brain.getStepCount();
+    }
+
+    /**
+     * Returns the state of a given cell
+     * @param i the cell row
+     * @param j the cell column
+     * @return Brain.OFF, Brain.ON or Brain.DYING
+     */
+    public int getState(int i, int j) {
+        return states[i * width + j];
+    }
+
+    /**
+     * Returns the states of all cells in row order, the array must not be modified
+     * @return the cell states
+     */
+    public byte[] getStates() {
+        return states;
+    }
+
+    /**
+     * Returns the tiles that changed since the snapshot before this one
+     * @return the changed tiles
+     */
+    public DirtyTiles getDirty() {
+        return dirty;
+    }
+
+    /**
+     * Returns the position of this snapshot in the chain of snapshots of an engine,
+     * the changed tiles are only complete relative to the previous position
+     * @return the sequence number
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Returns the width of the grid
+     * @return the width of the grid
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Returns the height of the grid
+     * @return the height of the grid
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Returns the number of cells with off status
+     * @return the number of off cells
+     */
+    public int getOffCount() {
+        return offCount;
+    }
+
+    /**
+     * Returns the number of cells with on status
+     * @return the number of on cells
+     */
+    public int getOnCount() {
+        return onCount;
+    }
+
+    /**
+     * Returns the number of cells with dying status
+     * @return the number of dying cells
+     */
+    public int getDyingCount() {
+        return dyingCount;
+    }
+
+    /**
+     * Returns the simulation step of the generation
+     * @return the simulation step
+     */
+    public int getStepCount() {
+        return stepCount;
+    }
+}
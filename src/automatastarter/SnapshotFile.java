@@ -0,0 +1,370 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package automatastarter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Saves and loads whole grids in a compact binary file.
+ * The file starts with a fixed size header holding the grid size, birth
+ * number, wrapping, step and counters, followed by the cells in row order
+ * at 2 bits per cell. The cells can be stored as they are, as runs of equal
+ * states, which suits mostly empty grids, or deflated.
+ * Files are read and written through memory mapped buffers straight from and
+ * into the engine, so no copy of the grid is ever built.
+ * Only the cells inside the grid are saved, the counters in the header count
+ * those cells, so the unbounded engines lose whatever grew outside of it
+ * @author paul
+ */
+public final class SnapshotFile {
+    /**
+     * How the cells are stored after the header
+     */
+    public enum Compression {
+        NONE, RLE, DEFLATE
+    }
+
+    // "BRNS" at the start of every file
+    private static final int MAGIC = 0x42524E53;
+    private static final short VERSION = 1;
+    // Magic, version, compression, flags, seven ints and the body length
+    private static final int HEADER = 4 + 2 + 1 + 1 + 7 * 4 + 8;
+    // Size of the buffers used when the body length is not known in advance
+    private static final int CHUNK = 1 << 16;
+    // Largest grid a snapshot may ask for, 16384 x 16384 cells
+    private static final long MAX_CELLS = 1L << 28;
+
+    private SnapshotFile() {
+    }
+
+    /**
+     * Writes the current generation of an engine to a file, replacing it if it exists
+     * @param brain the engine
+     * @param path the file
+     * @param compression how the cells are stored
+     * @throws IOException if the file cannot be written
+     */
+    public static void save(SimulationEngine brain, Path path, Compression compression) throws IOException {
+        long cells = (long) brain.getWidth() * brain.getHeight();
+        // Counters of the saved cells, filled in while they are written
+        int[] counts = new int[3];
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            long body;
+            if (compression == Compression.NONE) {
+                // The size is known, pack the cells straight into the mapped file
+                body = (cells + 3) / 4;
+                MappedByteBuffer out = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER + body);
+                out.position(HEADER);
+                pack(brain, out, counts);
+                out.position(0);
+                writeHeader(out, brain, compression, body, counts);
+                out.force();
+                return;
+            }
+            channel.position(HEADER);
+            body = compression == Compression.RLE ? writeRuns(brain, channel, counts) : writeDeflated(brain, channel, counts);
+            ByteBuffer header = ByteBuffer.allocate(HEADER);
+            writeHeader(header, brain, compression, body, counts);
+            header.flip();
+            channel.write(header, 0);
+        }
+    }
+
+    /**
+     * Reads a file into a new engine
+     * @param path the file
+     * @param type the kind of engine to create
+     * @return the engine holding the saved generation
+     * @throws IOException if the file cannot be read, is not a snapshot or is damaged
+     */
+    public static SimulationEngine load(Path path, EngineType type) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER) {
+                throw new IOException("Not a snapshot file: " + path);
+            }
+            MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (in.getInt() != MAGIC) {
+                throw new IOException("Not a snapshot file: " + path);
+            }
+            short version = in.getShort();
+            if (version != VERSION) {
+                throw new IOException("Unsupported snapshot version " + version);
+            }
+            int kind = in.get();
+            int flags = in.get();
+            int width = in.getInt();
+            int height = in.getInt();
+            int birthNumber = in.getInt();
+            int stepCount = in.getInt();
+            int onCount = in.getInt();
+            int dyingCount = in.getInt();
+            int offCount = in.getInt();
+            long body = in.getLong();
+            /* The size, rule and counters are checked before any engine is created, so a damaged
+               file can neither ask for a huge grid nor for a rule the engine cannot run
+            */
+            long cells = (long) width * height;
+            if (kind < 0 || kind >= Compression.values().length || width < 1 || height < 1
+                    || cells > MAX_CELLS || !type.supportsBirthNumber(birthNumber)
+                    || onCount < 0 || dyingCount < 0 || offCount < 0
+                    || (long) onCount + dyingCount + offCount != cells
+                    || body != channel.size() - HEADER) {
+                throw new IOException("Damaged snapshot header: " + path);
+            }
+
+            if (kind == Compression.NONE.ordinal() && body != ((long) width * height + 3) / 4) {
+                throw new IOException("Snapshot holds the wrong number of cells: " + path);
+            }
+
+            // New engines start with every cell off, only the live cells have to be set
+            SimulationEngine brain = type.create(width, height, birthNumber, (flags & 1) != 0);
+            switch (Compression.values()[kind]) {
+                case NONE: unpack(in, brain, 0); break;
+                case RLE: readRuns(in, brain); break;
+                default: readDeflated(in, brain);
+            }
+            brain.setStepCount(stepCount);
+            if (brain.getOnCount() != onCount || brain.getDyingCount() != dyingCount || brain.getOffCount() != offCount) {
+                throw new IOException("Snapshot cells do not match its counters: " + path);
+            }
+            return brain;
+        }
+    }
+
+    // Writes the header fields
+    private static void writeHeader(ByteBuffer out, SimulationEngine brain, Compression compression, long body, int[] counts) {
+        out.putInt(MAGIC);
+        out.putShort(VERSION);
+        out.put((byte) compression.ordinal());
+        out.put((byte) (brain.isWrapping() ? 1 : 0));
+        out.putInt(brain.getWidth());
+        out.putInt(brain.getHeight());
+        out.putInt(brain.getBirthNumber());
+        out.putInt(brain.getStepCount());
+        out.putInt(counts[Brain.ON]);
+        out.putInt(counts[Brain.DYING]);
+        out.putInt(counts[Brain.OFF]);
+        out.putLong(body);
+    }
+
+    // Packs four cells per byte, the first cell in the lowest bits, and counts them
+    private static void pack(SimulationEngine brain, ByteBuffer out, int[] counts) {
+        int width = brain.getWidth();
+        int bits = 0;
+        int filled = 0;
+        for (int i = 0; i < brain.getHeight(); i++) {
+            for (int j = 0; j < width; j++) {
+                int state = brain.getState(i, j);
+                counts[state]++;
+                bits |= state << (2 * filled);
+                if (++filled == 4) {
+                    out.put((byte) bits);
+                    bits = 0;
+                    filled = 0;
+                }
+            }
+        }
+        if (filled > 0) {
+            out.put((byte) bits);
+        }
+    }
+
+    // Sets the cells packed in the remaining bytes of a buffer, starting at a cell index, and returns the next index
+    private static long unpack(ByteBuffer in, SimulationEngine brain, long cell) throws IOException {
+        int width = brain.getWidth();
+        long cells = (long) width * brain.getHeight();
+        while (in.hasRemaining()) {
+            int bits = in.get();
+            for (int k = 0; k < 4 && cell < cells; k++, cell++) {
+                int state = (bits >> (2 * k)) & 3;
+                if (state > Brain.DYING) {
+                    throw new IOException("Invalid cell state in snapshot");
+                }
+                if (state != Brain.OFF) {
+                    brain.setState((int) (cell / width), (int) (cell % width), state);
+                }
+            }
+        }
+        return cell;
+    }
+
+    // Writes runs of equal states as variable length numbers holding the run length and state, counts the cells and returns the bytes written
+    private static long writeRuns(SimulationEngine brain, FileChannel channel, int[] counts) throws IOException {
+        ByteBuffer out = ByteBuffer.allocateDirect(CHUNK);
+        long written = 0;
+        int width = brain.getWidth();
+        int state = brain.getState(0, 0);
+        long run = 0;
+        for (int i = 0; i < brain.getHeight(); i++) {
+            for (int j = 0; j < width; j++) {
+                int next = brain.getState(i, j);
+                counts[next]++;
+                if (next != state) {
+                    written += putRun(out, channel, run, state);
+                    state = next;
+                    run = 0;
+                }
+                run++;
+            }
+        }
+        written += putRun(out, channel, run, state);
+        out.flip();
+        while (out.hasRemaining()) {
+            channel.write(out);
+        }
+        return written;
+    }
+
+    // Adds one run to the buffer, writing the buffer out when it is nearly full, and returns its size in bytes
+    private static int putRun(ByteBuffer out, FileChannel channel, long run, int state) throws IOException {
+        if (out.remaining() < 10) {
+            out.flip();
+            while (out.hasRemaining()) {
+                channel.write(out);
+            }
+            out.clear();
+        }
+        long value = run << 2 | state;
+        int size = 1;
+        while ((value & ~0x7FL) != 0) {
+            out.put((byte) (value & 0x7F | 0x80));
+            value >>>= 7;
+            size++;
+        }
+        out.put((byte) value);
+        return size;
+    }
+
+    // Sets the cells of the runs in the remaining bytes of a buffer
+    private static void readRuns(ByteBuffer in, SimulationEngine brain) throws IOException {
+        int width = brain.getWidth();
+        long cells = (long) width * brain.getHeight();
+        long cell = 0;
+        while (in.hasRemaining()) {
+            long value = 0;
+            int shift = 0;
+            int b;
+            do {
+                if (!in.hasRemaining() || shift > 63) {
+                    throw new IOException("Damaged run in snapshot");
+                }
+                b = in.get();
+                value |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            int state = (int) (value & 3);
+            long run = value >>> 2;
+            if (state > Brain.DYING || run > cells - cell) {
+                throw new IOException("Damaged run in snapshot");
+            }
+            if (state != Brain.OFF) {
+                for (long k = cell; k < cell + run; k++) {
+                    brain.setState((int) (k / width), (int) (k % width), state);
+                }
+            }
+            cell += run;
+        }
+        if (cell != cells) {
+            throw new IOException("Snapshot holds " + cell + " cells instead of " + cells);
+        }
+    }
+
+    // Deflates the packed cells chunk by chunk, counts them and returns the bytes written
+    private static long writeDeflated(SimulationEngine brain, FileChannel channel, int[] counts) throws IOException {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        ByteBuffer packed = ByteBuffer.allocate(CHUNK);
+        ByteBuffer out = ByteBuffer.allocateDirect(CHUNK);
+        long written = 0;
+        try {
+            int width = brain.getWidth();
+            int bits = 0;
+            int filled = 0;
+            for (int i = 0; i < brain.getHeight(); i++) {
+                for (int j = 0; j < width; j++) {
+                    int state = brain.getState(i, j);
+                    counts[state]++;
+                    bits |= state << (2 * filled);
+                    if (++filled == 4) {
+                        packed.put((byte) bits);
+                        bits = 0;
+                        filled = 0;
+                        if (!packed.hasRemaining()) {
+                            written += deflate(deflater, packed, out, channel);
+                        }
+                    }
+                }
+            }
+            if (filled > 0) {
+                packed.put((byte) bits);
+            }
+            written += deflate(deflater, packed, out, channel);
+            deflater.finish();
+            while (!deflater.finished()) {
+                written += drain(deflater, out, channel);
+            }
+        } finally {
+            deflater.end();
+        }
+        return written;
+    }
+
+    // Feeds a full buffer of packed cells to the deflater and writes what comes out
+    private static long deflate(Deflater deflater, ByteBuffer packed, ByteBuffer out, FileChannel channel) throws IOException {
+        packed.flip();
+        deflater.setInput(packed);
+        long written = 0;
+        while (!deflater.needsInput()) {
+            written += drain(deflater, out, channel);
+        }
+        packed.clear();
+        return written;
+    }
+
+    // Writes one buffer of deflated bytes
+    private static int drain(Deflater deflater, ByteBuffer out, FileChannel channel) throws IOException {
+        out.clear();
+        int size = deflater.deflate(out);
+        out.flip();
+        while (out.hasRemaining()) {
+            channel.write(out);
+        }
+        return size;
+    }
+
+    // Inflates the remaining bytes of a buffer chunk by chunk and sets the cells
+    private static void readDeflated(ByteBuffer in, SimulationEngine brain) throws IOException {
+        Inflater inflater = new Inflater();
+        ByteBuffer packed = ByteBuffer.allocate(CHUNK);
+        long cells = (long) brain.getWidth() * brain.getHeight();
+        long cell = 0;
+        try {
+            inflater.setInput(in);
+            while (!inflater.finished()) {
+                packed.clear();
+                if (inflater.inflate(packed) == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IOException("Deflated snapshot ends too early");
+                }
+                packed.flip();
+                cell = unpack(packed, brain, cell);
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Damaged deflated snapshot", e);
+        } finally {
+            inflater.end();
+        }
+        if (cell != cells) {
+            throw new IOException("Snapshot holds " + cell + " cells instead of " + cells);
+        }
+    }
+}
@@ -0,0 +1,440 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package automatastarter;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import utils.LongHashMap;
+
+/**
+ * Data model for Brian's Brain simulation on an unbounded plane that only
+ * stores non-empty tiles. Tiles are allocated when activity reaches their
+ * border and returned to a pool once they are empty, so memory follows the
+ * live population instead of the bounding box.
+ * The width and height only describe the viewport that getState, setState
+ * and the cell counters address, starting at the origin
+ * @author paul
+ */
+public class SparseBrain implements SimulationEngine {
+    // Side of a square tile in cells, one long per tile row
+    static final int TILE = 64;
+
+    /**
+     * A 64x64 block of cells stored as ON and DYING bitplanes
+     */
+    private static final class Tile {
+        int tx;
+        int ty;
+        long[] on = new long[TILE];
+        long[] dying = new long[TILE];
+        long[] nextOn = new long[TILE];
+        long[] nextDying = new long[TILE];
+        // Position in the list of live tiles
+        int index;
+        // Next tile in the free-list pool
+        Tile nextFree;
+
+        boolean isEmpty() {
+            for (int r = 0; r < TILE; r++) {
+                if ((on[r] | dying[r]) != 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    // Initialise variables
+    private int height;
+    private int width;
+    private int birthNumber;
+    // Tiles by packed coordinates, and the same tiles as a list for iteration
+    private final LongHashMap<Tile> tiles = new LongHashMap<>();
+    private Tile[] live = new Tile[16];
+    private int liveCount;
+    private Tile freeList;
+    private long onCount;
+    private long dyingCount;
+    private int stepCount;
+
+    /**
+     * Constructor, creates a sparse simulation given the parameter values
+     * @param width the width of the viewport
+     * @param height the height of the viewport
+     * @param birthNumber the number of neighboring cells that must be on in
+     *                    order an off cell on, at least 1 so empty space stays empty
+     */
+    public SparseBrain(int width, int height, int birthNumber){
+        if (birthNumber < 1 || birthNumber > 8) {
+            throw new IllegalArgumentException("Birth number must be between 1 and 8 on an unbounded plane");
+        }
+        this.width = width;
+        this.height = height;
+        this.birthNumber = birthNumber;
+        clear();
+    }
+
+    // Packs tile coordinates into a single map key
+    private static long key(int tx, int ty) {
+        return ((long) ty << 32) | (tx & 0xffffffffL);
+    }
+
+    // Returns the tile at the given tile coordinates, or null if it is empty
+    private Tile tileAt(int tx, int ty) {
+        return tiles.get(key(tx, ty));
+    }
+
+    // Returns the tile at the given tile coordinates, allocating it if needed
+    private Tile obtain(int tx, int ty) {
+        Tile t = tiles.get(key(tx, ty));
+        if (t != null) {
+            return t;
+        }
+        // Reuse a pooled tile when there is one
+        if (freeList != null) {
+            t = freeList;
+            freeList = t.nextFree;
+            t.nextFree = null;
+        } else {
+            t = new Tile();
+        }
+        t.tx = tx;
+        t.ty = ty;
+        tiles.put(key(tx, ty), t);
+        if (liveCount == live.length) {
+            live = Arrays.copyOf(live, liveCount * 2);
+        }
+        t.index = liveCount;
+        live[liveCount++] = t;
+        return t;
+    }
+
+    // Removes an empty tile and returns it to the pool
+    private void release(Tile t) {
+        tiles.remove(key(t.tx, t.ty));
+        Tile last = live[--liveCount];
+        live[t.index] = last;
+        last.index = t.index;
+        live[liveCount] = null;
+        Arrays.fill(t.on, 0);
+        Arrays.fill(t.dying, 0);
+        t.nextFree = freeList;
+        freeList = t;
+    }
+
+    /**
+     * Advance the simulation by one step
+     */
+    public void update() {
+        // Allocate the tiles that ON cells on a border can give birth into
+        int count = liveCount;
+        for (int k = 0; k < count; k++) {
+            Tile t = live[k];
+            long top = t.on[0];
+            long bottom = t.on[TILE - 1];
+            long left = 0;
+            long right = 0;
+            for (int r = 0; r < TILE; r++) {
+                left |= t.on[r] & 1;
+                right |= t.on[r] >>> (TILE - 1);
+            }
+            if (top != 0) {
+                obtain(t.tx, t.ty - 1);
+            }
+            if (bottom != 0) {
+                obtain(t.tx, t.ty + 1);
+            }
+            if (left != 0) {
+                obtain(t.tx - 1, t.ty);
+            }
+            if (right != 0) {
+                obtain(t.tx + 1, t.ty);
+            }
+            if ((top & 1) != 0) {
+                obtain(t.tx - 1, t.ty - 1);
+            }
+            if ((top >>> (TILE - 1)) != 0) {
+                obtain(t.tx + 1, t.ty - 1);
+            }
+            if ((bottom & 1) != 0) {
+                obtain(t.tx - 1, t.ty + 1);
+            }
+            if ((bottom >>> (TILE - 1)) != 0) {
+                obtain(t.tx + 1, t.ty + 1);
+            }
+        }
+
+        // Compute the next generation of every tile from the current one
+        onCount = 0;
+        dyingCount = 0;
+        for (int k = 0; k < liveCount; k++) {
+            stepTile(live[k]);
+        }
+
+        // Swap the buffers and release the tiles that became empty
+        for (int k = liveCount - 1; k >= 0; k--) {
+            Tile t = live[k];
+            long[] temp = t.on;
+            t.on = t.nextOn;
+            t.nextOn = temp;
+            temp = t.dying;
+            t.dying = t.nextDying;
+            t.nextDying = temp;
+            if (t.isEmpty()) {
+                release(t);
+            }
+        }
+        stepCount++;
+    }
+
+    // Computes the next generation of a tile into its back buffers
+    private void stepTile(Tile t) {
+        Tile nw = tileAt(t.tx - 1, t.ty - 1);
+        Tile n = tileAt(t.tx, t.ty - 1);
+        Tile ne = tileAt(t.tx + 1, t.ty - 1);
+        Tile w = tileAt(t.tx - 1, t.ty);
+        Tile e = tileAt(t.tx + 1, t.ty);
+        Tile sw = tileAt(t.tx - 1, t.ty + 1);
+        Tile s = tileAt(t.tx, t.ty + 1);
+        Tile se = tileAt(t.tx + 1, t.ty + 1);
+        for (int r = 0; r < TILE; r++) {
+            // Words of the row above, this row and the row below, with their left and right neighbors
+            long upLeft = (r > 0) ? word(w, r - 1) : word(nw, TILE - 1);
+            long up = (r > 0) ? t.on[r - 1] : word(n, TILE - 1);
+            long upRight = (r > 0) ? word(e, r - 1) : word(ne, TILE - 1);
+            long left = word(w, r);
+            long mid = t.on[r];
+            long right = word(e, r);
+            long downLeft = (r < TILE - 1) ? word(w, r + 1) : word(sw, 0);
+            long down = (r < TILE - 1) ? t.on[r + 1] : word(s, 0);
+            long downRight = (r < TILE - 1) ? word(e, r + 1) : word(se, 0);
+            // Birth mask: OFF cells with exactly birthNumber ON neighbors
+            long born = BitBrain.countEquals(west(up, upLeft), up, east(up, upRight),
+                                             west(mid, left), east(mid, right),
+                                             west(down, downLeft), down, east(down, downRight), birthNumber);
+            born &= ~mid & ~t.dying[r];
+            // ON cells start dying and DYING cells turn off
+            t.nextOn[r] = born;
+            t.nextDying[r] = mid;
+            onCount += Long.bitCount(born);
+            dyingCount += Long.bitCount(mid);
+        }
+    }
+
+    // Returns a row of the ON plane of a tile, empty tiles are all OFF
+    private static long word(Tile t, int r) {
+        return (t == null) ? 0 : t.on[r];
+    }
+
+    // Shifts a row so each bit holds the state of its left neighbor
+    private static long west(long mid, long left) {
+        return (mid << 1) | (left >>> (TILE - 1));
+    }
+
+    // Shifts a row so each bit holds the state of its right neighbor
+    private static long east(long mid, long right) {
+        return (mid >>> 1) | (right << (TILE - 1));
+    }
+
+    /**
+     * Reset all cells to off state
+     */
+    public void clear(){
+        while (liveCount > 0) {
+            release(live[liveCount - 1]);
+        }
+        onCount = 0;
+        dyingCount = 0;
+        stepCount = 0;
+    }
+
+    /**
+     * Initialize the viewport with a random pattern
+     */
+    public void randomize() {
+        clear();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < height; i++) {
+            for (int j = 0; j < width; j++) {
+                if (random.nextBoolean()) {
+                    setState(i, j, Brain.ON);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the state of a given cell in the viewport
+     * @param i the cell row
+     * @param j the cell column
+     * @return Brain.OFF, Brain.ON or Brain.DYING
+     */
+    public int getState(int i, int j){
+        Tile t = tileAt(Math.floorDiv(j, TILE), Math.floorDiv(i, TILE));
+        if (t == null) {
+            return Brain.OFF;
+        }
+        int r = Math.floorMod(i, TILE);
+        long bit = 1L << Math.floorMod(j, TILE);
+        if ((t.on[r] & bit) != 0) {
+            return Brain.ON;
+        } else if ((t.dying[r] & bit) != 0) {
+            return Brain.DYING;
+        }
+        return Brain.OFF;
+    }
+
+    /**
+     * Sets the state of a given cell in the viewport
+     * @param i the cell row
+     * @param j the cell column
+     * @param state Brain.OFF, Brain.ON or Brain.DYING
+     */
+    public void setState(int i, int j, int state){
+        int old = getState(i, j);
+        if (old == state) {
+            return;
+        }
+        Tile t = obtain(Math.floorDiv(j, TILE), Math.floorDiv(i, TILE));
+        int r = Math.floorMod(i, TILE);
+        long bit = 1L << Math.floorMod(j, TILE);
+        if (old == Brain.ON) {
+            onCount--;
+        } else if (old == Brain.DYING) {
+            dyingCount--;
+        }
+        t.on[r] &= ~bit;
+        t.dying[r] &= ~bit;
+        if (state == Brain.ON) {
+            t.on[r] |= bit;
+            onCount++;
+        } else if (state == Brain.DYING) {
+            t.dying[r] |= bit;
+            dyingCount++;
+        } else if (t.isEmpty()) {
+            release(t);
+        }
+    }
+
+    /**
+     * Returns the number of allocated tiles
+     * @return the tile count
+     */
+    public int getTileCount() {
+        return liveCount;
+    }
+
+    /**
+     * Returns the number of ON neighbors that turns an OFF cell on
+     * @return the birth number
+     */
+    public int getBirthNumber(){
+        return birthNumber;
+    }
+
+    /**
+     * Returns false, the plane is unbounded and never wraps
+     * @return false
+     */
+    public boolean isWrapping(){
+        return false;
+    }
+
+    /**
+     * Returns the width of the viewport
+     * @return the width of the viewport
+     */
+    public int getWidth(){
+        return width;
+    }
+
+    /**
+     * Returns the height of the viewport
+     * @return the height of the viewport
+     */
+    public int getHeight(){
+        return height;
+    }
+
+    // Counts the ON cells, the DYING cells or both inside the viewport, clipping every tile to it
+    private long countInViewport(boolean on, boolean dying) {
+        long count = 0;
+        for (int k = 0; k < liveCount; k++) {
+            Tile t = live[k];
+            long x0 = (long) t.tx * TILE;
+            long y0 = (long) t.ty * TILE;
+            int firstRow = (int) Math.max(0, -y0);
+            int lastRow = (int) Math.min(TILE, height - y0);
+            int firstColumn = (int) Math.max(0, -x0);
+            int lastColumn = (int) Math.min(TILE, width - x0);
+            if (firstRow >= lastRow || firstColumn >= lastColumn) {
+                continue;
+            }
+            long mask = (lastColumn == TILE ? -1L : (1L << lastColumn) - 1) & (-1L << firstColumn);
+            for (int r = firstRow; r < lastRow; r++) {
+                long cells = (on ? t.on[r] : 0) | (dying ? t.dying[r] : 0);
+                count += Long.bitCount(cells & mask);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the number of cells with off status inside the viewport,
+     * Integer.MAX_VALUE if the viewport holds more
+     * @return the number of off cells
+     */
+    public int getOffCount(){
+        return (int) Math.min((long) width * height - countInViewport(true, true), Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns the number of cells with on status inside the viewport
+     * @return the number of on cells
+     */
+    public int getOnCount(){
+        return (int) Math.min(countInViewport(true, false), Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns the number of cells with dying status inside the viewport
+     * @return the number of dying cells
+     */
+    public int getDyingCount(){
+        return (int) Math.min(countInViewport(false, true), Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns the number of cells with on status in the whole universe, including those outside the viewport
+     * @return the number of on cells
+     */
+    public long getUniverseOnCount(){
+        return onCount;
+    }
+
+    /**
+     * Returns the number of cells with dying status in the whole universe, including those outside the viewport
+     * @return the number of dying cells
+     */
+    public long getUniverseDyingCount(){
+        return dyingCount;
+    }
+
+    /**
+     * Returns the current simulation step
+     * @return the simulation step
+     */
+    public int getStepCount(){
+        return stepCount;
+    }
+
+    /**
+     * Sets the simulation step, for a grid restored from a file
+     * @param stepCount the simulation step
+     */
+    public void setStepCount(int stepCount){
+        this.stepCount = stepCount;
+    }
+}
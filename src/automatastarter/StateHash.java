@@ -0,0 +1,133 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package automatastarter;
+
+/**
+ * Hash functions for whole generations.
+ * The Zobrist hash XORs a random key for every live cell and its state, so it
+ * can be updated cell by cell as states change.
+ * The shape hash sums a term per live cell that is multiplied by X^column and
+ * Y^row, moving a pattern multiplies the sum by a power of X and Y, and
+ * dividing by the powers of the top left corner of the live cells gives the
+ * same value wherever the pattern is
+ * @author paul
+ */
+public final class StateHash {
+    // Odd multipliers so their powers can be inverted modulo 2^64
+    private static final long X = 0x9E3779B97F4A7C15L;
+    private static final long Y = 0xC2B2AE3D27D4EB4FL;
+    // Value of an ON and a DYING cell in the shape hash
+    private static final long[] VALUE = {0, 0x632BE59BD9B4E019L, 0x85EBCA77C2B2AE63L};
+
+    // Initialise variables
+    private final long[] powerX;
+    private final long[] powerY;
+    private final long[] inversePowerX;
+    private final long[] inversePowerY;
+
+    /**
+     * Constructor, prepares the powers used by the shape hash of a grid
+     * @param width the width of the grid
+     * @param height the height of the grid
+     */
+    public StateHash(int width, int height) {
+        powerX = powers(X, width);
+        powerY = powers(Y, height);
+        inversePowerX = powers(inverse(X), width);
+        inversePowerY = powers(inverse(Y), height);
+    }
+
+    /**
+     * Returns the Zobrist key of a cell in a state, OFF cells have no key
+     * @param index the cell index in row order
+     * @param state Brain.OFF, Brain.ON or Brain.DYING
+     * @return the key to XOR into the hash
+     */
+    public static long zobrist(int index, int state) {
+        if (state == Brain.OFF) {
+            return 0;
+        }
+        // SplitMix64 finalizer, so no table of keys has to be stored
+        long z = ((long) index << 2 | state) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Returns the shape hash term of a live cell
+     * @param i the cell row
+     * @param j the cell column
+     * @param state Brain.OFF, Brain.ON or Brain.DYING
+     * @return the term to add to the sum
+     */
+    public long term(int i, int j, int state) {
+        return VALUE[state] * powerX[j] * powerY[i];
+    }
+
+    /**
+     * Turns a sum of terms into a hash that does not depend on the position of the pattern
+     * @param sum the sum of the terms of all live cells
+     * @param left the smallest column holding a live cell
+     * @param top the smallest row holding a live cell
+     * @return the shape hash
+     */
+    public long normalize(long sum, int left, int top) {
+        return sum * inversePowerX[left] * inversePowerY[top];
+    }
+
+    /**
+     * Computes the hashes of an engine by reading every cell
+     * @param brain the engine
+     * @param hash receives the Zobrist hash, the shape hash and the column and
+     *             row of the top left corner of the live cells
+     */
+    public void scan(SimulationEngine brain, long[] hash) {
+        long zobrist = 0;
+        long sum = 0;
+        int left = Integer.MAX_VALUE;
+        int top = Integer.MAX_VALUE;
+        int width = brain.getWidth();
+        for (int i = 0; i < brain.getHeight(); i++) {
+            for (int j = 0; j < width; j++) {
+                int state = brain.getState(i, j);
+                if (state != Brain.OFF) {
+                    zobrist ^= zobrist(i * width + j, state);
+                    sum += term(i, j, state);
+                    left = Math.min(left, j);
+                    top = Math.min(top, i);
+                }
+            }
+        }
+        if (left == Integer.MAX_VALUE) {
+            // No live cells
+            left = 0;
+            top = 0;
+        }
+        hash[0] = zobrist;
+        hash[1] = normalize(sum, left, top);
+        hash[2] = left;
+        hash[3] = top;
+    }
+
+    // Returns base^0 to base^(count - 1) modulo 2^64
+    private static long[] powers(long base, int count) {
+        long[] powers = new long[Math.max(count, 1)];
+        powers[0] = 1;
+        for (int k = 1; k < count; k++) {
+            powers[k] = powers[k - 1] * base;
+        }
+        return powers;
+    }
+
+    // Returns the inverse of an odd number modulo 2^64 with Newton's method
+    private static long inverse(long a) {
+        long inverse = a;
+        for (int k = 0; k < 5; k++) {
+            inverse *= 2 - a * inverse;
+        }
+        return inverse;
+    }
+}
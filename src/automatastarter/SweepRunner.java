@@ -0,0 +1,506 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package automatastarter;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Command line entry point that runs one simulation for every combination of
+ * grid size, birth number, initial density and seed, for example:
+ *   java -cp GGA_Template.jar automatastarter.SweepRunner --birth 2-7 --density 0.1,0.3,0.5 --replicates 10
+ * The runs are independent and share a fixed number of threads. Each thread
+ * keeps its engine and cycle detector from one run to the next and only
+ * clears them when the next run has the same size and birth number, which the
+ * run order makes the usual case, so memory stays at one grid per thread.
+ * One summary line per run is written to a CSV file in run order, and with
+ * --series the counts of every run go to a CSV file of their own.
+ * With --engine Ensemble the replicates of a combination run 64 at a time in
+ * the lanes of an EnsembleBrain, which only detects extinction: runs that
+ * settle into a cycle are reported as still running
+ * @author paul
+ */
+public class SweepRunner {
+    // Summary columns, the status is RUNNING, EXTINCT, STILL or PERIODIC
+    private static final String SUMMARY_HEADER
+            = "run,width,height,birth,density,seed,steps,on,dying,off,status,cycle_start,period,dx,dy,millis";
+
+    // Initialise variables
+    private EngineType engine = EngineType.REFERENCE;
+    // Run the replicates in the lanes of an EnsembleBrain instead of an engine each
+    private boolean ensemble;
+    private final List<int[]> sizes = new ArrayList<>();
+    private final List<Integer> birthNumbers = new ArrayList<>();
+    private final List<Double> densities = new ArrayList<>();
+    private boolean wrapping = true;
+    private int replicates = 1;
+    private long seed = 1;
+    private int generations = 1000;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private String summaryFile = "sweep.csv";
+    private String seriesDirectory;
+    private int every = 1;
+    private String onCycle = "stop";
+    // Engine and detector of every thread, kept between runs
+    private final ThreadLocal<Worker> workers = ThreadLocal.withInitial(Worker::new);
+
+    // One combination of the parameters
+    private static final class Run {
+        final int index;
+        final int width;
+        final int height;
+        final int birthNumber;
+        final double density;
+        final long seed;
+
+        Run(int index, int width, int height, int birthNumber, double density, long seed) {
+            this.index = index;
+            this.width = width;
+            this.height = height;
+            this.birthNumber = birthNumber;
+            this.density = density;
+            this.seed = seed;
+        }
+    }
+
+    // What a thread keeps from one run to the next
+    private static final class Worker {
+        SimulationEngine brain;
+        EnsembleBrain lanes;
+        final CycleDetector detector = new CycleDetector();
+    }
+
+    /**
+     * Parses the options, runs the sweep and writes its results
+     * @param args the command line options, see usage
+     */
+    public static void main(String[] args) {
+        // Nothing here needs a display, make sure AWT never tries to open one
+        System.setProperty("java.awt.headless", "true");
+        SweepRunner runner = new SweepRunner();
+        try {
+            runner.parse(args);
+            runner.run();
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            usage();
+            System.exit(2);
+        } catch (IOException e) {
+            System.err.println("I/O error: " + e.getMessage());
+            System.exit(1);
+        } catch (IllegalStateException e) {
+            System.err.println(e.getMessage() + ": " + e.getCause());
+            System.exit(1);
+        }
+    }
+
+    // Prints the available options
+    private static void usage() {
+        System.err.println("Usage: SweepRunner [options], lists are separated by commas");
+        System.err.println("  --engine NAME       simulation engine, or Ensemble for 64 replicates at once, default Reference");
+        System.err.println("  --size LIST         grid sizes such as 64x48,128x96, default 100x100");
+        System.err.println("  --birth LIST        birth numbers, ranges such as 2-7 allowed, default 2");
+        System.err.println("  --density LIST      share of cells initially on, default 0.5");
+        System.err.println("  --wrap true|false   wrap the grid, default true");
+        System.err.println("  --replicates N      runs of every combination, with seeds counting up, default 1");
+        System.err.println("  --seed N            seed of the first replicate, default 1");
+        System.err.println("  --generations N     number of generations of every run, default 1000");
+        System.err.println("  --threads N         runs at the same time, default the number of processors");
+        System.err.println("  --summary FILE      one line per run as CSV, default sweep.csv");
+        System.err.println("  --series DIR        write the counts of every run to DIR/run-N.csv");
+        System.err.println("  --every N           write the counts of every N-th generation only, default 1");
+        System.err.println("  --on-cycle MODE     when the grid dies out or repeats: run on, or stop, default stop");
+    }
+
+    // Reads the command line options
+    private void parse(String[] args) {
+        for (int k = 0; k < args.length; k++) {
+            if (k + 1 >= args.length) {
+                throw new IllegalArgumentException("Missing value for " + args[k]);
+            }
+            String value = args[++k];
+            try {
+                switch (args[k - 1]) {
+                    case "--engine":
+                        ensemble = value.equalsIgnoreCase("ensemble");
+                        if (!ensemble) {
+                            engine = EngineType.parse(value);
+                        }
+                        break;
+                    case "--size": parseSizes(value); break;
+                    case "--birth": parseBirthNumbers(value); break;
+                    case "--density": parseDensities(value); break;
+                    case "--wrap": wrapping = Boolean.parseBoolean(value); break;
+                    case "--replicates": replicates = Integer.parseInt(value); break;
+                    case "--seed": seed = Long.parseLong(value); break;
+                    case "--generations": generations = Integer.parseInt(value); break;
+                    case "--threads": threads = Integer.parseInt(value); break;
+                    case "--summary": summaryFile = value; break;
+                    case "--series": seriesDirectory = value; break;
+                    case "--every": every = Integer.parseInt(value); break;
+                    case "--on-cycle": onCycle = value.toLowerCase(); break;
+                    default: throw new IllegalArgumentException("Unknown option " + args[k - 1]);
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Not a number: " + value);
+            }
+        }
+        if (sizes.isEmpty()) {
+            sizes.add(new int[] {100, 100});
+        }
+        if (birthNumbers.isEmpty()) {
+            birthNumbers.add(2);
+        }
+        if (densities.isEmpty()) {
+            densities.add(0.5);
+        }
+        if (replicates < 1 || generations < 0 || threads < 1 || every < 1) {
+            throw new IllegalArgumentException("Invalid replicate, generation, thread or sample count");
+        }
+        if (!onCycle.equals("run") && !onCycle.equals("stop")) {
+            throw new IllegalArgumentException("Unknown cycle mode " + onCycle);
+        }
+        if (!ensemble) {
+            // Fail before any run starts rather than in the middle of the sweep
+            for (int birthNumber : birthNumbers) {
+                if (!engine.supportsBirthNumber(birthNumber)) {
+                    throw new IllegalArgumentException("Engine " + engine + " cannot run birth number " + birthNumber);
+                }
+            }
+        }
+    }
+
+    // Reads a list of sizes such as 64x48,128x96
+    private void parseSizes(String value) {
+        for (String size : value.split(",")) {
+            String[] parts = size.trim().toLowerCase().split("x");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Not a size: " + size);
+            }
+            int width = Integer.parseInt(parts[0].trim());
+            int height = Integer.parseInt(parts[1].trim());
+            if (width < 1 || height < 1) {
+                throw new IllegalArgumentException("Invalid grid size " + size);
+            }
+            sizes.add(new int[] {width, height});
+        }
+    }
+
+    // Reads a list of birth numbers and ranges such as 2,4-6
+    private void parseBirthNumbers(String value) {
+        for (String item : value.split(",")) {
+            String[] range = item.trim().split("-");
+            int from = Integer.parseInt(range[0].trim());
+            int to = (range.length > 1) ? Integer.parseInt(range[1].trim()) : from;
+            if (range.length > 2 || from < 0 || to > 8 || from > to) {
+                throw new IllegalArgumentException("Invalid birth numbers " + item);
+            }
+            for (int b = from; b <= to; b++) {
+                birthNumbers.add(b);
+            }
+        }
+    }
+
+    // Reads a list of densities between 0 and 1
+    private void parseDensities(String value) {
+        for (String item : value.split(",")) {
+            double density = Double.parseDouble(item.trim());
+            if (!(density >= 0 && density <= 1)) {
+                throw new IllegalArgumentException("Invalid density " + item);
+            }
+            densities.add(density);
+        }
+    }
+
+    /**
+     * Runs every combination on the thread pool and writes the summary as the runs finish, in run order
+     * @throws IOException if a result cannot be written
+     */
+    public void run() throws IOException {
+        /* Runs of the same size and birth number follow each other, so threads can reuse their engine.
+           A task simulates one run, or up to 64 replicates in an ensemble
+        */
+        List<Run> runs = new ArrayList<>();
+        List<List<Run>> tasks = new ArrayList<>();
+        for (int[] size : sizes) {
+            for (int birthNumber : birthNumbers) {
+                for (double density : densities) {
+                    for (int r = 0; r < replicates; r++) {
+                        Run run = new Run(runs.size() + 1, size[0], size[1], birthNumber, density, seed + r);
+                        runs.add(run);
+                        if (!ensemble || r % EnsembleBrain.LANES == 0) {
+                            tasks.add(new ArrayList<>());
+                        }
+                        tasks.get(tasks.size() - 1).add(run);
+                    }
+                }
+            }
+        }
+        if (seriesDirectory != null) {
+            Files.createDirectories(Paths.get(seriesDirectory));
+        }
+        System.out.println("Sweep: " + runs.size() + " runs of " + generations + " generations on "
+                + threads + " threads, engine " + (ensemble ? "Ensemble" : engine));
+
+        /* A fixed pool rather than virtual threads: the runs are CPU-bound and never block, and every
+           pool thread keeps one engine for the runs it takes, so more threads than processors would
+           only add engines without finishing sooner
+        */
+        long start = System.nanoTime();
+        ExecutorService executor = Executors.newFixedThreadPool(threads, task -> {
+            Thread thread = new Thread(task, "Sweep");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(Paths.get(summaryFile)))) {
+            List<Future<List<String>>> results = new ArrayList<>();
+            for (List<Run> task : tasks) {
+                results.add(executor.submit(() -> ensemble ? simulateLanes(task)
+                        : Collections.singletonList(simulate(task.get(0)))));
+            }
+            out.println(SUMMARY_HEADER);
+            for (Future<List<String>> result : results) {
+                for (String line : result.get()) {
+                    out.println(line);
+                }
+                out.flush();
+            }
+            if (out.checkError()) {
+                throw new IOException(summaryFile);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Sweep interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IllegalStateException("Run failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf(Locale.ROOT, "Finished: %d runs in %.3f s, summary in %s%n", runs.size(), seconds, summaryFile);
+    }
+
+    // Simulates one run on the engine of the current thread and returns its summary line
+    private String simulate(Run run) throws IOException {
+        long start = System.nanoTime();
+        Worker worker = workers.get();
+        SimulationEngine brain = worker.brain;
+        if (brain == null || brain.getWidth() != run.width || brain.getHeight() != run.height
+                || brain.getBirthNumber() != run.birthNumber) {
+            // Only a new size or birth number needs a new engine, the old one can be collected
+            worker.brain = null;
+            brain = engine.create(run.width, run.height, run.birthNumber, wrapping);
+            worker.brain = brain;
+        } else {
+            brain.clear();
+            brain.setStepCount(0);
+        }
+        fill(brain, run);
+        CycleDetector detector = worker.detector;
+        detector.reset();
+        detector.observe(brain);
+
+        PrintWriter series = openSeries(run);
+        try {
+            writeCounts(series, brain);
+            for (int k = 0; k < generations; k++) {
+                if (onCycle.equals("stop") && detector.getStatus() != CycleDetector.Status.RUNNING) {
+                    break;
+                }
+                brain.update();
+                if (k % every == every - 1) {
+                    writeCounts(series, brain);
+                }
+                detector.observe(brain);
+            }
+            if (series != null && series.checkError()) {
+                throw new IOException("Could not write the counts of run " + run.index);
+            }
+        } finally {
+            if (series != null) {
+                series.close();
+            }
+        }
+
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        return summary(run, brain.getStepCount(), brain.getOnCount(), brain.getDyingCount(), brain.getOffCount(),
+                detector.getStatus(), detector.getStart(), detector.getPeriod(), detector.getDx(), detector.getDy(),
+                millis);
+    }
+
+    /* Simulates up to 64 replicates in the lanes of the ensemble of the current thread and returns
+        their summary lines. A lane that dies out is finished like a single run stopping on extinction,
+        the others run to the last generation. Under B0 no lane ever dies out
+    */
+    private List<String> simulateLanes(List<Run> group) throws IOException {
+        long start = System.nanoTime();
+        Run first = group.get(0);
+        Worker worker = workers.get();
+        EnsembleBrain lanes = worker.lanes;
+        if (lanes == null || lanes.getWidth() != first.width || lanes.getHeight() != first.height
+                || lanes.getBirthNumber() != first.birthNumber) {
+            worker.lanes = null;
+            lanes = new EnsembleBrain(first.width, first.height, first.birthNumber, wrapping);
+            worker.lanes = lanes;
+        } else {
+            lanes.clear();
+        }
+        int count = group.size();
+        for (int lane = 0; lane < count; lane++) {
+            fill(lanes, lane, group.get(lane));
+        }
+        long used = (count == EnsembleBrain.LANES) ? -1L : (1L << count) - 1;
+        // Step at which every lane died out, -1 while it lives
+        int[] extinct = new int[count];
+        Arrays.fill(extinct, -1);
+        int[] on = new int[EnsembleBrain.LANES];
+        int[] dying = new int[EnsembleBrain.LANES];
+        int cells = first.width * first.height;
+
+        PrintWriter[] series = new PrintWriter[count];
+        try {
+            for (int lane = 0; lane < count; lane++) {
+                series[lane] = openSeries(group.get(lane));
+            }
+            writeLaneCounts(series, lanes, extinct, on, dying, cells);
+            long live = lanes.getLiveLanes() & used;
+            markExtinct(extinct, used & ~live, 0);
+            for (int k = 0; k < generations; k++) {
+                if (onCycle.equals("stop") && live == 0) {
+                    break;
+                }
+                lanes.update();
+                if (k % every == every - 1) {
+                    writeLaneCounts(series, lanes, extinct, on, dying, cells);
+                }
+                long alive = lanes.getLiveLanes() & used;
+                markExtinct(extinct, live & ~alive, lanes.getStepCount());
+                live = alive;
+            }
+            for (int lane = 0; lane < count; lane++) {
+                if (series[lane] != null && series[lane].checkError()) {
+                    throw new IOException("Could not write the counts of run " + group.get(lane).index);
+                }
+            }
+        } finally {
+            for (PrintWriter out : series) {
+                if (out != null) {
+                    out.close();
+                }
+            }
+        }
+
+        // The time of the ensemble is shared out between its runs
+        long millis = (System.nanoTime() - start) / 1_000_000 / count;
+        lanes.getOnCounts(on);
+        lanes.getDyingCounts(dying);
+        List<String> lines = new ArrayList<>();
+        for (int lane = 0; lane < count; lane++) {
+            Run run = group.get(lane);
+            if (extinct[lane] < 0) {
+                lines.add(summary(run, lanes.getStepCount(), on[lane], dying[lane], cells - on[lane] - dying[lane],
+                        CycleDetector.Status.RUNNING, 0, 0, 0, 0, millis));
+            } else {
+                int steps = onCycle.equals("stop") ? extinct[lane] : lanes.getStepCount();
+                lines.add(summary(run, steps, 0, 0, cells, CycleDetector.Status.EXTINCT, extinct[lane], 1, 0, 0, millis));
+            }
+        }
+        return lines;
+    }
+
+    // Remembers the step at which the lanes of a mask died out
+    private static void markExtinct(int[] extinct, long lanes, int step) {
+        while (lanes != 0) {
+            extinct[Long.numberOfTrailingZeros(lanes)] = step;
+            lanes &= lanes - 1;
+        }
+    }
+
+    /* Writes the counts of every lane that still has a series, stopping a lane after the generation
+        it died out in unless the runs go on after a cycle
+    */
+    private void writeLaneCounts(PrintWriter[] series, EnsembleBrain lanes, int[] extinct, int[] on, int[] dying,
+            int cells) {
+        if (seriesDirectory == null) {
+            return;
+        }
+        lanes.getOnCounts(on);
+        lanes.getDyingCounts(dying);
+        for (int lane = 0; lane < series.length; lane++) {
+            if (extinct[lane] < 0 || onCycle.equals("run")) {
+                series[lane].println(lanes.getStepCount() + "," + on[lane] + "," + dying[lane] + ","
+                        + (cells - on[lane] - dying[lane]));
+            }
+        }
+    }
+
+    // Opens the counts file of a run, or returns null if the counts are not written
+    private PrintWriter openSeries(Run run) throws IOException {
+        if (seriesDirectory == null) {
+            return null;
+        }
+        Path file = Paths.get(seriesDirectory, String.format("run-%05d.csv", run.index));
+        PrintWriter series = new PrintWriter(Files.newBufferedWriter(file));
+        series.println("step,on,dying,off");
+        return series;
+    }
+
+    // Formats the summary line of a run
+    private static String summary(Run run, int steps, int on, int dying, int off, CycleDetector.Status status,
+            int cycleStart, int period, int dx, int dy, long millis) {
+        return String.format(Locale.ROOT, "%d,%d,%d,%d,%s,%d,%d,%d,%d,%d,%s,%d,%d,%d,%d,%d",
+                run.index, run.width, run.height, run.birthNumber, run.density, run.seed,
+                steps, on, dying, off, status, cycleStart, period, dx, dy, millis);
+    }
+
+    // Turns cells on at random with the density of the run, the same seed gives the same grid
+    private static void fill(SimulationEngine brain, Run run) {
+        Random random = new Random(run.seed);
+        for (int i = 0; i < run.height; i++) {
+            for (int j = 0; j < run.width; j++) {
+                if (random.nextDouble() < run.density) {
+                    brain.setState(i, j, Brain.ON);
+                }
+            }
+        }
+    }
+
+    // Turns cells on at random in one lane, giving the same grid as fill with the same run
+    private static void fill(EnsembleBrain lanes, int lane, Run run) {
+        Random random = new Random(run.seed);
+        for (int i = 0; i < run.height; i++) {
+            for (int j = 0; j < run.width; j++) {
+                if (random.nextDouble() < run.density) {
+                    lanes.setState(lane, i, j, Brain.ON);
+                }
+            }
+        }
+    }
+
+    // Writes the counts of the current generation, if the counts are written at all
+    private static void writeCounts(PrintWriter out, SimulationEngine brain) {
+        if (out != null) {
+            out.println(brain.getStepCount() + "," + brain.getOnCount() + "," + brain.getDyingCount() + ","
+                    + brain.getOffCount());
+        }
+    }
+}
@@ -0,0 +1,338 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package automatastarter;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Data model for Brian's Brain simulation that only recomputes active tiles.
+ * The grid is split into square tiles, a tile is active when it changed during
+ * the last generation or borders a tile that did. Quiescent tiles are skipped
+ * @author paul
+ */
+public class TiledBrain implements SimulationEngine {
+    // Side of a square tile in cells
+    static final int TILE = 16;
+
+    // Initialise variables
+    private int height;
+    private int width;
+    private int birthNumber;
+    private boolean wrapping;
+    // Current generation and back buffer, one byte per cell
+    private byte[] cells;
+    private byte[] next;
+    private int tilesX;
+    private int tilesY;
+    // Tiles that changed during the last generation or were edited since
+    private int[] changedTiles;
+    private int changedSize;
+    private boolean[] tileChanged;
+    // Tiles to recompute during the current step, marked with the step stamp
+    private int[] activeTiles;
+    private int[] activeStamp;
+    private int stamp;
+    private int onCount;
+    private int offCount;
+    private int dyingCount;
+    private int stepCount;
+
+    /**
+     * Constructor, creates a tiled brain simulation given the parameter values
+     * @param width the width of the grid
+     * @param height the height of the grid
+     * @param birthNumber the number of neighboring cells that must be on in
+     *                    order an off cell on
+     * @param wrapping if true the grid wraps both horizontally and vertically
+     */
+    public TiledBrain(int width, int height, int birthNumber, boolean wrapping){
+        this.width = width;
+        this.height = height;
+        this.birthNumber = birthNumber;
+        this.wrapping = wrapping;
+        cells = new byte[width * height];
+        next = new byte[width * height];
+        tilesX = (width + TILE - 1) / TILE;
+        tilesY = (height + TILE - 1) / TILE;
+        changedTiles = new int[tilesX * tilesY];
+        tileChanged = new boolean[tilesX * tilesY];
+        activeTiles = new int[tilesX * tilesY];
+        activeStamp = new int[tilesX * tilesY];
+        clear();
+    }
+
+    /**
+     * Initialize the simulation with a random pattern
+     */
+    public void randomize() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        // Reset all counters to zero
+        onCount = 0;
+        offCount = 0;
+        dyingCount = 0;
+        stepCount = 0;
+        for (int k = 0; k < cells.length; k++) {
+            // Assigns the random state not including DYING
+            cells[k] = (byte) (random.nextBoolean() ? Brain.ON : Brain.OFF);
+            if (cells[k] == Brain.ON) {
+                onCount++;
+            } else {
+                offCount++;
+            }
+        }
+        System.arraycopy(cells, 0, next, 0, cells.length);
+        markAllChanged();
+    }
+
+    /**
+     * Advance the simulation by one step
+     */
+    public void update() {
+        if (birthNumber == 0) {
+            // Empty space is not stable when cells are born without neighbors
+            markAllChanged();
+        }
+        // Collect the changed tiles and their neighbors as the active set
+        stamp++;
+        int activeSize = 0;
+        for (int k = 0; k < changedSize; k++) {
+            int tile = changedTiles[k];
+            tileChanged[tile] = false;
+            int tx = tile % tilesX;
+            int ty = tile / tilesX;
+            for (int dy = -1; dy <= 1; dy++) {
+                for (int dx = -1; dx <= 1; dx++) {
+                    int neighbor = neighborTile(tx + dx, ty + dy);
+                    if (neighbor >= 0 && activeStamp[neighbor] != stamp) {
+                        activeStamp[neighbor] = stamp;
+                        activeTiles[activeSize++] = neighbor;
+                    }
+                }
+            }
+        }
+        changedSize = 0;
+
+        // Recompute the active tiles only, the others are identical in both buffers
+        for (int k = 0; k < activeSize; k++) {
+            if (stepTile(activeTiles[k])) {
+                markChanged(activeTiles[k]);
+            }
+        }
+
+        // Swap the buffers so the new generation becomes current
+        byte[] temp = cells;
+        cells = next;
+        next = temp;
+        stepCount++;
+    }
+
+    // Returns the index of the tile at the given tile coordinates, or -1 if it is outside the grid
+    private int neighborTile(int tx, int ty) {
+        if (wrapping) {
+            tx = (tx + tilesX) % tilesX;
+            ty = (ty + tilesY) % tilesY;
+        } else if (tx < 0 || tx >= tilesX || ty < 0 || ty >= tilesY) {
+            return -1;
+        }
+        return ty * tilesX + tx;
+    }
+
+    // Computes the next generation of a tile into the back buffer and returns true if any cell changed
+    private boolean stepTile(int tile) {
+        int top = (tile / tilesX) * TILE;
+        int left = (tile % tilesX) * TILE;
+        int bottom = Math.min(top + TILE, height);
+        int right = Math.min(left + TILE, width);
+        boolean changed = false;
+        for (int i = top; i < bottom; i++) {
+            for (int j = left; j < right; j++) {
+                int k = i * width + j;
+                byte state = cells[k];
+                byte result;
+                if (state == Brain.ON) {
+                    // ON cells always start dying
+                    result = Brain.DYING;
+                } else if (state == Brain.DYING) {
+                    // DYING cells always turn off
+                    result = Brain.OFF;
+                } else if (countNeighbors(i, j) == birthNumber) {
+                    result = Brain.ON;
+                } else {
+                    result = Brain.OFF;
+                }
+                next[k] = result;
+                if (result != state) {
+                    changed = true;
+                    count(state, -1);
+                    count(result, 1);
+                }
+            }
+        }
+        return changed;
+    }
+
+    // Counts the number of Moore neighbors that are ON
+    private int countNeighbors(int i, int j) {
+        int count = 0;
+        for (int di = -1; di <= 1; di++) {
+            for (int dj = -1; dj <= 1; dj++) {
+                if (di == 0 && dj == 0) {
+                    continue;
+                }
+                int ni = i + di;
+                int nj = j + dj;
+                if (wrapping) {
+                    ni = (ni + height) % height;
+                    nj = (nj + width) % width;
+                }
+                if (ni >= 0 && ni < height && nj >= 0 && nj < width && cells[ni * width + nj] == Brain.ON) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    // Adjusts the counter of the given state
+    private void count(int state, int delta) {
+        if (state == Brain.ON) {
+            onCount += delta;
+        } else if (state == Brain.DYING) {
+            dyingCount += delta;
+        } else {
+            offCount += delta;
+        }
+    }
+
+    // Records that a tile changed so it and its neighbors are recomputed next step
+    private void markChanged(int tile) {
+        if (!tileChanged[tile]) {
+            tileChanged[tile] = true;
+            changedTiles[changedSize++] = tile;
+        }
+    }
+
+    // Marks every tile as changed, used after the whole grid was rewritten
+    private void markAllChanged() {
+        for (int tile = 0; tile < tileChanged.length; tile++) {
+            markChanged(tile);
+        }
+    }
+
+    /**
+     * Reset all cells to off state
+     */
+    public void clear(){
+        // Reset all counters
+        onCount = 0;
+        dyingCount = 0;
+        stepCount = 0;
+        offCount = width * height;
+        Arrays.fill(cells, (byte) Brain.OFF);
+        Arrays.fill(next, (byte) Brain.OFF);
+        // An empty grid stays empty so no tile needs to be recomputed
+        for (int k = 0; k < changedSize; k++) {
+            tileChanged[changedTiles[k]] = false;
+        }
+        changedSize = 0;
+    }
+
+    /**
+     * Returns the state of a given cell
+     * @param i the cell row
+     * @param j the cell column
+     * @return Brain.OFF, Brain.ON or Brain.DYING
+     */
+    public int getState(int i, int j){
+        return cells[i * width + j];
+    }
+
+    /**
+     * Sets the state of a given cell and keeps the counters in sync
+     * @param i the cell row
+     * @param j the cell column
+     * @param state Brain.OFF, Brain.ON or Brain.DYING
+     */
+    public void setState(int i, int j, int state){
+        int k = i * width + j;
+        count(cells[k], -1);
+        cells[k] = (byte) state;
+        count(state, 1);
+        markChanged((i / TILE) * tilesX + j / TILE);
+    }
+
+    /**
+     * Returns the number of ON neighbors that turns an OFF cell on
+     * @return the birth number
+     */
+    public int getBirthNumber(){
+        return birthNumber;
+    }
+
+    /**
+     * Returns whether the grid wraps around both horizontally and vertically
+     * @return true if the grid wraps
+     */
+    public boolean isWrapping(){
+        return wrapping;
+    }
+
+    /**
+     * Returns the width of the grid
+     * @return the width of the grid
+     */
+    public int getWidth(){
+        return width;
+    }
+
+    /**
+     * Returns the height of the grid
+     * @return the height of the grid
+     */
+    public int getHeight(){
+        return height;
+    }
+
+    /**
+     * Returns the number of cells with off status
+     * @return the number of off cells
+     */
+    public int getOffCount(){
+        return offCount;
+    }
+
+    /**
+     * Returns the number of cells with on status
+     * @return the number of on cells
+     */
+    public int getOnCount(){
+        return onCount;
+    }
+
+    /**
+     * Returns the number of cells with dying status
+     * @return the number of dying cells
+     */
+    public int getDyingCount(){
+        return dyingCount;
+    }
+
+    /**
+     * Returns the current simulation step
+     * @return the simulation step
+     */
+    public int getStepCount(){
+        return stepCount;
+    }
+
+    /**
+     * Sets the simulation step, for a grid restored from a file
+     * @param stepCount the simulation step
+     */
+    public void setStepCount(int stepCount){
+        this.stepCount = stepCount;
+    }
+}
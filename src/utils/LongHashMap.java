@@ -0,0 +1,145 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package utils;
+
+import java.util.Arrays;
+
+/**
+ * Hash map from primitive long keys to objects, using open addressing with
+ * linear probing so keys are never boxed
+ * @author paul
+ * @param <V> the type of the values
+ */
+public class LongHashMap<V> {
+    private long[] keys;
+    // A null value marks an empty slot
+    private Object[] values;
+    private int size;
+    private int mask;
+
+    /**
+     * Creates an empty map
+     */
+    public LongHashMap() {
+        keys = new long[16];
+        values = new Object[16];
+        mask = 15;
+    }
+
+    // Spreads the bits of a key over the whole int range
+    private static int hash(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+
+    /**
+     * Returns the value stored for a key
+     * @param key the key
+     * @return the value, or null if there is none
+     */
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        for (int slot = hash(key) & mask; values[slot] != null; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                return (V) values[slot];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Stores a value for a key, replacing any previous value
+     * @param key the key
+     * @param value the value, must not be null
+     */
+    public void put(long key, V value) {
+        int slot = hash(key) & mask;
+        while (values[slot] != null) {
+            if (keys[slot] == key) {
+                values[slot] = value;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        size++;
+        if (size > (mask + 1) * 3 / 4) {
+            resize((mask + 1) * 2);
+        }
+    }
+
+    /**
+     * Removes the value stored for a key
+     * @param key the key
+     * @return the removed value, or null if there was none
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(long key) {
+        int slot = hash(key) & mask;
+        while (values[slot] != null) {
+            if (keys[slot] == key) {
+                V old = (V) values[slot];
+                deleteSlot(slot);
+                size--;
+                return old;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return null;
+    }
+
+    // Empties a slot and shifts back the entries that probed past it
+    private void deleteSlot(int slot) {
+        int gap = slot;
+        for (int next = (slot + 1) & mask; values[next] != null; next = (next + 1) & mask) {
+            int home = hash(keys[next]) & mask;
+            // Move the entry into the gap unless its home lies between the gap and its slot
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                keys[gap] = keys[next];
+                values[gap] = values[next];
+                gap = next;
+            }
+        }
+        values[gap] = null;
+    }
+
+    // Rehashes every entry into tables of the given size
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        keys = new long[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+        for (int k = 0; k < oldValues.length; k++) {
+            if (oldValues[k] != null) {
+                int slot = hash(oldKeys[k]) & mask;
+                while (values[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[k];
+                values[slot] = oldValues[k];
+            }
+        }
+    }
+
+    /**
+     * Removes all entries
+     */
+    public void clear() {
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    /**
+     * Returns the number of entries
+     * @return the number of entries
+     */
+    public int size() {
+        return size;
+    }
+}
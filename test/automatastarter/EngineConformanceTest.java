@@ -0,0 +1,63 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/UnitTests/JUnit4TestClass.java to edit this template
+ */
+package automatastarter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Random;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import static org.junit.Assert.*;
+
+/**
+ * Runs the cases of EngineConformance as unit tests, one test for every
+ * engine, with the seed used by ant conformance
+ * @author paul
+ */
+@RunWith(Parameterized.class)
+public class EngineConformanceTest {
+    // Seed of the soups, the default of EngineConformance
+    private static final long SEED = 1;
+
+    // Initialise variables
+    private final EngineType type;
+
+    /**
+     * Returns every engine but the reference it is compared with
+     * @return one parameter array per engine
+     */
+    @Parameterized.Parameters(name = "{0}")
+    public static Collection<Object[]> engines() {
+        Collection<Object[]> engines = new ArrayList<>();
+        for (EngineType type : EngineType.values()) {
+            if (type != EngineType.REFERENCE) {
+                engines.add(new Object[]{type});
+            }
+        }
+        return engines;
+    }
+
+    /**
+     * Constructor
+     * @param type the engine under test
+     */
+    public EngineConformanceTest(EngineType type) {
+        this.type = type;
+    }
+
+    /**
+     * The engine matches the reference on every soup and library pattern
+     * @throws IOException if a pattern of the library cannot be read
+     */
+    @Test
+    public void testEngineMatchesReference() throws IOException {
+        EngineConformance conformance = new EngineConformance();
+        conformance.checkEngine(type, new Random(SEED));
+        assertTrue("no cases ran", conformance.getCases() > 0);
+        assertEquals(type + " differs from the reference, see the FAIL lines", 0, conformance.getFailures());
+    }
+}
@@ -0,0 +1,27 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/UnitTests/JUnit4TestClass.java to edit this template
+ */
+package automatastarter;
+
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Runs the ensemble cases of EngineConformance as a unit test
+ * @author paul
+ */
+public class EnsembleConformanceTest {
+
+    /**
+     * Every checked lane of the ensemble matches a reference Brain run on its own
+     */
+    @Test
+    public void testLanesMatchReference() {
+        EngineConformance conformance = new EngineConformance();
+        conformance.checkEnsemble(new Random(1));
+        assertTrue("no cases ran", conformance.getCases() > 0);
+        assertEquals("the ensemble differs from the reference, see the FAIL lines", 0, conformance.getFailures());
+    }
+}
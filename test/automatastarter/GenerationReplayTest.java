@@ -0,0 +1,159 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/UnitTests/JUnit4TestClass.java to edit this template
+ */
+package automatastarter;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+/**
+ * Records runs with GenerationRecorder and checks that GenerationReplay gives every generation back
+ * @author paul
+ */
+public class GenerationReplayTest {
+    // Generations recorded in every run
+    private static final int GENERATIONS = 60;
+    // Keyframe interval that puts several keyframes in a run
+    private static final int KEYFRAME_INTERVAL = 16;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Replaying a run from the start gives every recorded generation with its counters
+     * @throws IOException if the recording cannot be written or read
+     */
+    @Test
+    public void testReplayInOrder() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("run.rec");
+        Map<Integer, SimulationEngine> expected = record(file, new Brain(37, 29, 2, true), 0);
+        try (GenerationReplay replay = new GenerationReplay(file)) {
+            assertEquals(37, replay.getWidth());
+            assertEquals(29, replay.getHeight());
+            assertEquals(2, replay.getBirthNumber());
+            assertTrue(replay.isWrapping());
+            for (int step = 0; step <= GENERATIONS; step++) {
+                assertTrue("recording ends before step " + step, replay.next());
+                assertSameGeneration(expected.get(step), replay);
+            }
+            assertFalse(replay.next());
+        }
+    }
+
+    /**
+     * Seeking forwards and backwards, across keyframes, lands on the right generation
+     * @throws IOException if the recording cannot be written or read
+     */
+    @Test
+    public void testSeek() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("seek.rec");
+        Map<Integer, SimulationEngine> expected = record(file, new Brain(64, 48, 3, false), 0);
+        int[] targets = {GENERATIONS, 0, 17, 16, 15, 40, 33, 59, 1};
+        try (GenerationReplay replay = new GenerationReplay(file)) {
+            for (int target : targets) {
+                replay.seek(target);
+                assertSameGeneration(expected.get(target), replay);
+            }
+        }
+    }
+
+    /**
+     * A jump in the steps is recorded as a keyframe, and seeking into the gap lands after it
+     * @throws IOException if the recording cannot be written or read
+     */
+    @Test
+    public void testJump() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("jump.rec");
+        Map<Integer, SimulationEngine> expected = record(file, new Brain(30, 30, 2, true), 1000);
+        try (GenerationReplay replay = new GenerationReplay(file)) {
+            replay.seek(GENERATIONS / 2 + 500);
+            assertEquals(GENERATIONS / 2 + 1000 + 1, replay.getStepCount());
+            assertSameGeneration(expected.get(replay.getStepCount()), replay);
+            SimulationEngine resumed = replay.toEngine(EngineType.BITPLANE);
+            assertEquals(EngineConformance.hash(expected.get(replay.getStepCount())), EngineConformance.hash(resumed));
+            assertEquals(replay.getStepCount(), resumed.getStepCount());
+        }
+    }
+
+    /**
+     * A step before the start of the recording is rejected
+     * @throws IOException if the recording cannot be written or read
+     */
+    @Test(expected = IOException.class)
+    public void testSeekBeforeStart() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("late.rec");
+        SimulationEngine brain = new Brain(10, 10, 2, true);
+        brain.setStepCount(5);
+        try (GenerationRecorder recorder = new GenerationRecorder(file, brain, KEYFRAME_INTERVAL)) {
+            brain.update();
+            recorder.record(brain);
+        }
+        try (GenerationReplay replay = new GenerationReplay(file)) {
+            replay.seek(4);
+        }
+    }
+
+    /* Records a soup for GENERATIONS steps and returns a copy of every generation by step.
+        A jump greater than zero skips that many steps halfway through the run
+    */
+    private static Map<Integer, SimulationEngine> record(Path file, SimulationEngine brain, int jump)
+            throws IOException {
+        Random random = new Random(brain.getWidth());
+        for (int i = 0; i < brain.getHeight(); i++) {
+            for (int j = 0; j < brain.getWidth(); j++) {
+                int roll = random.nextInt(8);
+                brain.setState(i, j, (roll < 3) ? Brain.ON : (roll == 3) ? Brain.DYING : Brain.OFF);
+            }
+        }
+        Map<Integer, SimulationEngine> generations = new HashMap<>();
+        generations.put(brain.getStepCount(), copy(brain));
+        try (GenerationRecorder recorder = new GenerationRecorder(file, brain, KEYFRAME_INTERVAL)) {
+            for (int k = 0; k < GENERATIONS; k++) {
+                if (jump > 0 && k == GENERATIONS / 2) {
+                    brain.setStepCount(brain.getStepCount() + jump);
+                }
+                brain.update();
+                recorder.record(brain);
+                generations.put(brain.getStepCount(), copy(brain));
+            }
+        }
+        return generations;
+    }
+
+    // Returns a copy of the current generation of an engine
+    private static SimulationEngine copy(SimulationEngine brain) {
+        SimulationEngine copy = new Brain(brain.getWidth(), brain.getHeight(), brain.getBirthNumber(), brain.isWrapping());
+        for (int i = 0; i < brain.getHeight(); i++) {
+            for (int j = 0; j < brain.getWidth(); j++) {
+                copy.setState(i, j, brain.getState(i, j));
+            }
+        }
+        copy.setStepCount(brain.getStepCount());
+        return copy;
+    }
+
+    // Checks that the replayed generation is the expected one, cell by cell
+    private static void assertSameGeneration(SimulationEngine expected, GenerationReplay replay) {
+        assertNotNull("step " + replay.getStepCount() + " was not recorded", expected);
+        String step = "step " + expected.getStepCount();
+        assertEquals(step, expected.getStepCount(), replay.getStepCount());
+        assertEquals(step, expected.getOnCount(), replay.getOnCount());
+        assertEquals(step, expected.getDyingCount(), replay.getDyingCount());
+        assertEquals(step, expected.getOffCount(), replay.getOffCount());
+        for (int i = 0; i < expected.getHeight(); i++) {
+            for (int j = 0; j < expected.getWidth(); j++) {
+                if (expected.getState(i, j) != replay.getState(i, j)) {
+                    fail(step + " differs at cell " + i + "," + j);
+                }
+            }
+        }
+    }
+}
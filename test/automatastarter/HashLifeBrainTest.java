@@ -0,0 +1,119 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/UnitTests/JUnit4TestClass.java to edit this template
+ */
+package automatastarter;
+
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Checks the jumps of HashLifeBrain against the reference Brain. The
+ * conformance cases only step one generation at a time, here stepN and
+ * stepPow2 jump many generations at once, through the memoized results
+ * and with a node limit small enough that the garbage collection runs
+ * after nearly every jump
+ * @author paul
+ */
+public class HashLifeBrainTest {
+    // Odd jumps and powers of two, 200 generations in all
+    private static final long[] JUMPS = {1, 3, 7, 2, 63, 64, 1, 59};
+    // Side of the soup in the middle of the grid
+    private static final int SOUP = 24;
+    // Side of the grid, wide enough that nothing reaches the edges of the reference
+    private static final int SIZE = SOUP + 2 * 204;
+
+    /**
+     * Jumps of every size match the reference stepped one generation at a time
+     */
+    @Test
+    public void testJumpsMatchReference() {
+        // Birth number and node limit of every run
+        int[][] runs = {{2, HashLifeBrain.DEFAULT_MAX_NODES}, {2, 64}, {3, 64}};
+        // Nodes left by the run without collections, for comparison
+        int unlimitedNodes = 0;
+        for (int[] run : runs) {
+            int birthNumber = run[0];
+            int maxNodes = run[1];
+            Brain reference = new Brain(SIZE, SIZE, birthNumber, false);
+            HashLifeBrain brain = new HashLifeBrain(SIZE, SIZE, birthNumber);
+            brain.setMaxNodes(maxNodes);
+            soup(new Random(birthNumber), reference, brain);
+            for (long jump : JUMPS) {
+                brain.stepN(jump);
+                for (long k = 0; k < jump; k++) {
+                    reference.update();
+                }
+                String name = "B" + birthNumber + " limit " + maxNodes + " step " + reference.getStepCount();
+                assertEquals(name, reference.getStepCount(), brain.getStepCount());
+                assertEquals(name, EngineConformance.hash(reference), EngineConformance.hash(brain));
+                assertEquals(name, reference.getOnCount(), brain.getOnCount());
+                assertEquals(name, reference.getDyingCount(), brain.getDyingCount());
+                assertEquals(name, reference.getOffCount(), brain.getOffCount());
+                // Nothing has left the viewport yet, so the universe holds the same cells
+                assertEquals(name, reference.getOnCount(), brain.getUniverseOnCount());
+                assertEquals(name, reference.getDyingCount(), brain.getUniverseDyingCount());
+            }
+            if (maxNodes == HashLifeBrain.DEFAULT_MAX_NODES) {
+                unlimitedNodes = brain.getNodeCount();
+            } else if (birthNumber == runs[0][0]) {
+                assertTrue("the nodes were never collected", brain.getNodeCount() < unlimitedNodes);
+            }
+        }
+    }
+
+    /**
+     * A single jump of 2^k generations equals 2^k single steps
+     */
+    @Test
+    public void testStepPow2() {
+        HashLifeBrain jumped = new HashLifeBrain(SIZE, SIZE, 2);
+        HashLifeBrain stepped = new HashLifeBrain(SIZE, SIZE, 2);
+        soup(new Random(9), jumped, stepped);
+        jumped.setMaxNodes(64);
+        jumped.stepPow2(7);
+        for (int k = 0; k < 128; k++) {
+            stepped.update();
+        }
+        assertEquals(128, jumped.getStepCount());
+        assertEquals(EngineConformance.hash(stepped), EngineConformance.hash(jumped));
+        assertEquals(stepped.getUniverseOnCount(), jumped.getUniverseOnCount());
+    }
+
+    /**
+     * After a jump long enough for cells to leave the viewport the three
+     * counts still cover the same cells, and the generation goes past an int
+     */
+    @Test
+    public void testCountsCoverViewport() {
+        HashLifeBrain brain = new HashLifeBrain(64, 48, 2);
+        brain.setMaxNodes(4096);
+        soup(new Random(11), brain, brain, 16);
+        brain.stepN((1L << 33) + 12345);
+        assertEquals((1L << 33) + 12345, brain.getGeneration());
+        assertEquals(Integer.MAX_VALUE, brain.getStepCount());
+        assertEquals(64 * 48, brain.getOnCount() + brain.getDyingCount() + brain.getOffCount());
+        assertTrue(brain.getUniverseOnCount() >= brain.getOnCount());
+        assertTrue(brain.getUniverseDyingCount() >= brain.getDyingCount());
+    }
+
+    // Fills the middle of both engines with the same random cells
+    private static void soup(Random random, SimulationEngine reference, SimulationEngine brain) {
+        soup(random, reference, brain, SOUP);
+    }
+
+    // Fills a square in the middle of both engines with the same random cells
+    private static void soup(Random random, SimulationEngine reference, SimulationEngine brain, int side) {
+        int top = (reference.getHeight() - side) / 2;
+        int left = (reference.getWidth() - side) / 2;
+        for (int i = top; i < top + side; i++) {
+            for (int j = left; j < left + side; j++) {
+                int roll = random.nextInt(8);
+                int state = (roll < 3) ? Brain.ON : (roll == 3) ? Brain.DYING : Brain.OFF;
+                reference.setState(i, j, state);
+                brain.setState(i, j, state);
+            }
+        }
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/UnitTests/JUnit4TestClass.java to edit this template
+ */
+package automatastarter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Records generations in a RewindHistory and steps back through them
+ * @author paul
+ */
+public class RewindHistoryTest {
+
+    /**
+     * Stepping back from the newest generation gives every earlier one back, across keyframes
+     */
+    @Test
+    public void testStepBackToStart() {
+        RewindHistory history = new RewindHistory(Long.MAX_VALUE, 4);
+        SimulationEngine brain = soup(new Brain(37, 29, 2, true), 1);
+        List<long[]> expected = run(history, brain, 30);
+        assertEquals(31, history.size());
+        for (int k = expected.size() - 2; k >= 0; k--) {
+            assertTrue("no generation before step " + brain.getStepCount(), history.stepBack(brain));
+            assertGeneration(expected.get(k), brain);
+        }
+        assertFalse(history.stepBack(brain));
+        assertEquals(1, history.size());
+    }
+
+    /**
+     * Stepping back in every engine keeps the counters in sync with the cells
+     */
+    @Test
+    public void testStepBackInEveryEngine() {
+        for (EngineType type : EngineType.values()) {
+            if (type.isBounded()) {
+                RewindHistory history = new RewindHistory(Long.MAX_VALUE, 5);
+                SimulationEngine brain = soup(type.create(40, 20, 3, false), 2);
+                List<long[]> expected = run(history, brain, 12);
+                for (int k = expected.size() - 2; k >= 0; k--) {
+                    assertTrue(type.toString(), history.stepBack(brain));
+                    assertGeneration(expected.get(k), brain);
+                }
+            }
+        }
+    }
+
+    /**
+     * A small budget drops the oldest segments, and the generations still held are given back correctly
+     */
+    @Test
+    public void testBudgetDropsOldestSegments() {
+        RewindHistory history = new RewindHistory(8 * 1024, 8);
+        SimulationEngine brain = soup(new Brain(64, 64, 2, true), 3);
+        List<long[]> expected = run(history, brain, 200);
+        int kept = history.size();
+        assertTrue("nothing was dropped", kept < expected.size());
+        for (int k = expected.size() - 2; k > expected.size() - kept - 1; k--) {
+            assertTrue(history.stepBack(brain));
+            assertGeneration(expected.get(k), brain);
+        }
+        assertFalse(history.stepBack(brain));
+    }
+
+    /**
+     * An edit is undone by stepping back, and an edit that changes nothing is not stored
+     */
+    @Test
+    public void testUndoEdit() {
+        RewindHistory history = new RewindHistory(Long.MAX_VALUE, RewindHistory.DEFAULT_KEYFRAME_INTERVAL);
+        SimulationEngine brain = soup(new Brain(20, 20, 2, false), 4);
+        history.record(brain);
+        long[] before = generation(brain);
+
+        brain.setState(3, 3, brain.getState(3, 3));
+        history.record(brain);
+        assertEquals(1, history.size());
+
+        brain.setState(3, 3, brain.getState(3, 3) == Brain.ON ? Brain.OFF : Brain.ON);
+        history.record(brain);
+        assertEquals(2, history.size());
+        assertTrue(history.stepBack(brain));
+        assertGeneration(before, brain);
+    }
+
+    /**
+     * A grid of another size starts a new history
+     */
+    @Test
+    public void testNewSizeClears() {
+        RewindHistory history = new RewindHistory(Long.MAX_VALUE, 4);
+        run(history, soup(new Brain(10, 10, 2, true), 5), 6);
+        SimulationEngine brain = soup(new Brain(12, 10, 2, true), 6);
+        history.record(brain);
+        assertEquals(1, history.size());
+        assertFalse(history.stepBack(brain));
+    }
+
+    // Records the current generation and the given number of steps, and returns their hash, step and counters
+    private static List<long[]> run(RewindHistory history, SimulationEngine brain, int steps) {
+        List<long[]> generations = new ArrayList<>();
+        history.record(brain);
+        generations.add(generation(brain));
+        for (int k = 0; k < steps; k++) {
+            brain.update();
+            history.record(brain);
+            generations.add(generation(brain));
+        }
+        return generations;
+    }
+
+    // Returns the hash, step and counters of the current generation
+    private static long[] generation(SimulationEngine brain) {
+        return new long[]{EngineConformance.hash(brain), brain.getStepCount(), brain.getOnCount(),
+            brain.getDyingCount(), brain.getOffCount()};
+    }
+
+    // Checks that an engine holds a generation
+    private static void assertGeneration(long[] expected, SimulationEngine brain) {
+        assertArrayEquals("step " + expected[1], expected, generation(brain));
+    }
+
+    // Fills a grid with seeded random cells and returns it
+    private static SimulationEngine soup(SimulationEngine brain, long seed) {
+        Random random = new Random(seed);
+        for (int i = 0; i < brain.getHeight(); i++) {
+            for (int j = 0; j < brain.getWidth(); j++) {
+                int roll = random.nextInt(8);
+                brain.setState(i, j, (roll < 3) ? Brain.ON : (roll == 3) ? Brain.DYING : Brain.OFF);
+            }
+        }
+        return brain;
+    }
+}
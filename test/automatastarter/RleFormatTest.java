@@ -0,0 +1,161 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/UnitTests/JUnit4TestClass.java to edit this template
+ */
+package automatastarter;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Writes patterns and reads them back, and checks how a pattern with
+ * another rule or invalid cells is handled
+ * @author paul
+ */
+public class RleFormatTest {
+
+    /**
+     * A pattern read back into an empty grid is written out the same way again, in every bounded engine
+     * @throws IOException if the pattern cannot be read
+     */
+    @Test
+    public void testRoundTrip() throws IOException {
+        SimulationEngine brain = new Brain(40, 30, 3, false);
+        soup(brain, new Random(3), 5, 8, 17, 11);
+        String text = save(brain, "soup");
+        assertTrue(text.startsWith("#N soup\nx = 11, y = 17, rule = B3/S/3\n"));
+        for (EngineType type : EngineType.values()) {
+            if (type.isBounded()) {
+                SimulationEngine loaded = type.create(40, 30, 3, false);
+                RleFormat.Header header = RleFormat.load(new StringReader(text), loaded);
+                assertEquals(type.toString(), 11, header.width);
+                assertEquals(type.toString(), 17, header.height);
+                assertEquals(type.toString(), 3, header.birthNumber);
+                assertEquals(type.toString(), text, save(loaded, "soup"));
+                assertEquals(type.toString(), brain.getOnCount(), loaded.getOnCount());
+                assertEquals(type.toString(), brain.getDyingCount(), loaded.getDyingCount());
+            }
+        }
+    }
+
+    /**
+     * An empty grid is written as a pattern without cells and read back as an empty grid
+     * @throws IOException if the pattern cannot be read
+     */
+    @Test
+    public void testEmptyPattern() throws IOException {
+        String text = save(new Brain(10, 10, 2, true), null);
+        SimulationEngine loaded = new Brain(10, 10, 2, true);
+        loaded.setState(4, 4, Brain.ON);
+        RleFormat.load(new StringReader(text), loaded);
+        assertEquals(0, loaded.getOnCount());
+        assertEquals(100, loaded.getOffCount());
+    }
+
+    /**
+     * A pattern whose rule has another birth number is rejected and the grid is left as it was
+     * @throws IOException if the grid cannot be saved
+     */
+    @Test
+    public void testRuleMismatch() throws IOException {
+        SimulationEngine pattern = new Brain(20, 20, 3, false);
+        soup(pattern, new Random(4), 2, 2, 10, 10);
+        SimulationEngine brain = new Brain(20, 20, 2, false);
+        soup(brain, new Random(5), 0, 0, 20, 20);
+        brain.setStepCount(42);
+        long before = EngineConformance.hash(brain);
+        try {
+            RleFormat.load(new StringReader(save(pattern, null)), brain);
+            fail("a B3 pattern was loaded into a B2 grid");
+        } catch (IOException e) {
+            assertEquals(before, EngineConformance.hash(brain));
+            assertEquals(42, brain.getStepCount());
+        }
+    }
+
+    /**
+     * Loading with the rule of the pattern gives a new engine of the same type and leaves the old one alone
+     * @throws IOException if the pattern cannot be read
+     */
+    @Test
+    public void testLoadWithRule() throws IOException {
+        SimulationEngine pattern = new Brain(20, 20, 3, false);
+        soup(pattern, new Random(6), 2, 2, 10, 10);
+        String text = save(pattern, null);
+        SimulationEngine brain = EngineType.BITPLANE.create(30, 25, 2, true);
+        soup(brain, new Random(7), 0, 0, 25, 30);
+        long before = EngineConformance.hash(brain);
+
+        SimulationEngine loaded = RleFormat.loadWithRule(new StringReader(text), brain);
+        assertNotSame(brain, loaded);
+        assertEquals(EngineType.BITPLANE, EngineType.of(loaded));
+        assertEquals(3, loaded.getBirthNumber());
+        assertEquals(30, loaded.getWidth());
+        assertEquals(25, loaded.getHeight());
+        assertTrue(loaded.isWrapping());
+        assertEquals(text, save(loaded, null));
+        assertEquals(before, EngineConformance.hash(brain));
+
+        // The same rule keeps the engine
+        assertSame(loaded, RleFormat.loadWithRule(new StringReader(text), loaded));
+    }
+
+    /**
+     * A rule the type of engine cannot run is rejected as an invalid pattern
+     * @throws IOException if the grid cannot be saved
+     */
+    @Test
+    public void testLoadWithRuleTheEngineCannotRun() throws IOException {
+        String text = save(new Brain(10, 10, 0, false), null);
+        SimulationEngine brain = EngineType.HASHLIFE.create(20, 20, 2, false);
+        try {
+            RleFormat.loadWithRule(new StringReader(text), brain);
+            fail("a B0 pattern was loaded into HashLife");
+        } catch (IOException e) {
+            assertEquals(2, brain.getBirthNumber());
+        }
+    }
+
+    /**
+     * Invalid cells are rejected and the grid and its step are left as they were
+     */
+    @Test
+    public void testInvalidCellsLeaveGrid() {
+        SimulationEngine brain = new Brain(15, 12, 2, true);
+        soup(brain, new Random(8), 0, 0, 12, 15);
+        brain.setStepCount(7);
+        long before = EngineConformance.hash(brain);
+        int on = brain.getOnCount();
+        try {
+            RleFormat.load(new StringReader("x = 3, y = 2, rule = B2/S/3\nobo$oxo!\n"), brain);
+            fail("a pattern with an invalid cell was loaded");
+        } catch (IOException e) {
+            assertEquals(before, EngineConformance.hash(brain));
+            assertEquals(on, brain.getOnCount());
+            assertEquals(7, brain.getStepCount());
+        }
+    }
+
+    // Writes the live cells of an engine as a pattern
+    private static String save(SimulationEngine brain, String name) throws IOException {
+        StringWriter out = new StringWriter();
+        RleFormat.save(brain, out, name);
+        return out.toString().replace(System.lineSeparator(), "\n");
+    }
+
+    // Fills a rectangle with random cells, its corners always ON so the pattern keeps its size
+    private static void soup(SimulationEngine brain, Random random, int top, int left, int height, int width) {
+        for (int i = top; i < top + height; i++) {
+            for (int j = left; j < left + width; j++) {
+                int roll = random.nextInt(8);
+                brain.setState(i, j, (roll < 3) ? Brain.ON : (roll == 3) ? Brain.DYING : Brain.OFF);
+            }
+        }
+        brain.setState(top, left, Brain.ON);
+        brain.setState(top + height - 1, left + width - 1, Brain.ON);
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/UnitTests/JUnit4TestClass.java to edit this template
+ */
+package automatastarter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+/**
+ * Saves grids with every compression and checks that loading them gives the same grid back
+ * @author paul
+ */
+public class SnapshotFileTest {
+    // Offsets of header fields, after the magic, version, compression and flags
+    private static final int WIDTH = 8;
+    private static final int HEIGHT = 12;
+    private static final int BIRTH_NUMBER = 16;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * A soup survives a round trip with every compression, into every bounded engine
+     * @throws IOException if a file cannot be written or read
+     */
+    @Test
+    public void testRoundTrip() throws IOException {
+        // Sizes that are not a multiple of the four cells packed in a byte
+        int[][] sizes = {{1, 1}, {37, 29}, {130, 67}};
+        for (int[] size : sizes) {
+            SimulationEngine brain = new Brain(size[0], size[1], 3, true);
+            soup(brain, new Random(size[0]));
+            brain.update();
+            for (SnapshotFile.Compression compression : SnapshotFile.Compression.values()) {
+                Path file = folder.newFile().toPath();
+                SnapshotFile.save(brain, file, compression);
+                for (EngineType type : EngineType.values()) {
+                    if (type.isBounded()) {
+                        assertSameGrid(compression + " into " + type, brain, SnapshotFile.load(file, type));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * An empty grid without wrapping keeps its parameters and step
+     * @throws IOException if the file cannot be written or read
+     */
+    @Test
+    public void testEmptyGrid() throws IOException {
+        SimulationEngine brain = new Brain(20, 10, 0, false);
+        brain.setStepCount(12345);
+        Path file = folder.newFile().toPath();
+        SnapshotFile.save(brain, file, SnapshotFile.Compression.RLE);
+        assertSameGrid("empty", brain, SnapshotFile.load(file, EngineType.REFERENCE));
+    }
+
+    /**
+     * A file that is not a snapshot is rejected
+     * @throws IOException if the file cannot be written
+     */
+    @Test(expected = IOException.class)
+    public void testNotASnapshot() throws IOException {
+        Path file = folder.newFile().toPath();
+        Files.write(file, "x = 3, y = 1, rule = B2/S/3\nobo!\n".getBytes(StandardCharsets.US_ASCII));
+        SnapshotFile.load(file, EngineType.REFERENCE);
+    }
+
+    /**
+     * A file cut short is rejected rather than loaded as a partial grid
+     * @throws IOException if the file cannot be written
+     */
+    @Test(expected = IOException.class)
+    public void testTruncated() throws IOException {
+        SimulationEngine brain = new Brain(64, 48, 2, true);
+        soup(brain, new Random(7));
+        Path file = folder.newFile().toPath();
+        SnapshotFile.save(brain, file, SnapshotFile.Compression.DEFLATE);
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length - 10));
+        SnapshotFile.load(file, EngineType.REFERENCE);
+    }
+
+    /**
+     * Headers asking for a huge grid, an impossible birth number or counters that do not
+     * add up are rejected before an engine is created
+     * @throws IOException if a file cannot be written
+     */
+    @Test
+    public void testDamagedHeader() throws IOException {
+        SimulationEngine brain = new Brain(16, 8, 2, true);
+        soup(brain, new Random(3));
+        Path file = folder.newFile().toPath();
+        SnapshotFile.save(brain, file, SnapshotFile.Compression.RLE);
+        byte[] saved = Files.readAllBytes(file);
+        // Header field and the value written over it
+        int[][] damages = {{WIDTH, 1 << 20}, {HEIGHT, 1 << 20}, {WIDTH, -16}, {BIRTH_NUMBER, 42},
+            {BIRTH_NUMBER, -1}, {BIRTH_NUMBER, 9}, {WIDTH, 17}};
+        for (int[] damage : damages) {
+            byte[] bytes = saved.clone();
+            ByteBuffer.wrap(bytes).putInt(damage[0], damage[1]);
+            Files.write(file, bytes);
+            try {
+                SnapshotFile.load(file, EngineType.REFERENCE);
+                fail("header field at " + damage[0] + " set to " + damage[1] + " was accepted");
+            } catch (IOException e) {
+                assertTrue(e.getMessage(), e.getMessage().startsWith("Damaged snapshot header"));
+            }
+        }
+    }
+
+    /**
+     * A B0 snapshot cannot be loaded into an unbounded engine, which would fill all of space
+     * @throws IOException if the file cannot be written
+     */
+    @Test
+    public void testBirthNumberTheEngineCannotRun() throws IOException {
+        Path file = folder.newFile().toPath();
+        SnapshotFile.save(new Brain(16, 8, 0, false), file, SnapshotFile.Compression.NONE);
+        assertEquals(0, SnapshotFile.load(file, EngineType.BITPLANE).getBirthNumber());
+        for (EngineType type : EngineType.values()) {
+            if (!type.isBounded()) {
+                try {
+                    SnapshotFile.load(file, type);
+                    fail("a B0 snapshot was loaded into " + type);
+                } catch (IOException e) {
+                    assertTrue(e.getMessage(), e.getMessage().startsWith("Damaged snapshot header"));
+                }
+            }
+        }
+    }
+
+    // Fills a grid with mostly ON and OFF cells and a few DYING ones
+    private static void soup(SimulationEngine brain, Random random) {
+        for (int i = 0; i < brain.getHeight(); i++) {
+            for (int j = 0; j < brain.getWidth(); j++) {
+                int roll = random.nextInt(8);
+                brain.setState(i, j, (roll < 3) ? Brain.ON : (roll == 3) ? Brain.DYING : Brain.OFF);
+            }
+        }
+    }
+
+    // Checks that two engines hold the same parameters, cells, counters and step
+    private static void assertSameGrid(String message, SimulationEngine expected, SimulationEngine actual) {
+        assertEquals(message, expected.getWidth(), actual.getWidth());
+        assertEquals(message, expected.getHeight(), actual.getHeight());
+        assertEquals(message, expected.getBirthNumber(), actual.getBirthNumber());
+        assertEquals(message, expected.isWrapping(), actual.isWrapping());
+        assertEquals(message, expected.getStepCount(), actual.getStepCount());
+        assertEquals(message, expected.getOnCount(), actual.getOnCount());
+        assertEquals(message, expected.getDyingCount(), actual.getDyingCount());
+        assertEquals(message, expected.getOffCount(), actual.getOffCount());
+        assertEquals(message, EngineConformance.hash(expected), EngineConformance.hash(actual));
+    }
+}
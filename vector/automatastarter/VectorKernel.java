@@ -0,0 +1,89 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package automatastarter;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * SIMD stepping kernel for the ghost border layout of HaloBrain.
+ * A full vector of cells is advanced at a time, the cells left at the end of
+ * a row are stepped one by one.
+ * This class is compiled apart from the rest of the program, only when the
+ * build is run with -Dvector.enabled=true, because it needs the incubating
+ * jdk.incubator.vector module. HaloBrain looks it up at run time and only
+ * uses it when the module is enabled
+ * @author paul
+ */
+final class VectorKernel {
+    // The widest vector shape supported by the processor
+    private static final VectorSpecies<Byte> SPECIES = ByteVector.SPECIES_PREFERRED;
+
+    private VectorKernel() {
+    }
+
+    /**
+     * Computes the next generation of every interior cell
+     * @param cells the current generation with its ghost border filled in
+     * @param next the array receiving the next generation
+     * @param stride the distance between two rows
+     * @param width the width of the grid
+     * @param height the height of the grid
+     * @param birthNumber the number of ON neighbors that turns an OFF cell on
+     * @param counts receives the number of OFF, ON and DYING cells
+     */
+    static void step(byte[] cells, byte[] next, int stride, int width, int height, int birthNumber, int[] counts) {
+        int lanes = SPECIES.length();
+        byte birth = (byte) birthNumber;
+        int on = 0;
+        int dying = 0;
+        for (int i = 1; i <= height; i++) {
+            int start = i * stride + 1;
+            int end = start + width;
+            int k = start;
+            for (; k + lanes <= end; k += lanes) {
+                // ON is the only state with the lowest bit set
+                ByteVector count = ByteVector.fromArray(SPECIES, cells, k - stride - 1).and((byte) 1)
+                        .add(ByteVector.fromArray(SPECIES, cells, k - stride).and((byte) 1))
+                        .add(ByteVector.fromArray(SPECIES, cells, k - stride + 1).and((byte) 1))
+                        .add(ByteVector.fromArray(SPECIES, cells, k - 1).and((byte) 1))
+                        .add(ByteVector.fromArray(SPECIES, cells, k + 1).and((byte) 1))
+                        .add(ByteVector.fromArray(SPECIES, cells, k + stride - 1).and((byte) 1))
+                        .add(ByteVector.fromArray(SPECIES, cells, k + stride).and((byte) 1))
+                        .add(ByteVector.fromArray(SPECIES, cells, k + stride + 1).and((byte) 1));
+                ByteVector state = ByteVector.fromArray(SPECIES, cells, k);
+                VectorMask<Byte> isOn = state.eq((byte) Brain.ON);
+                VectorMask<Byte> born = state.eq((byte) Brain.OFF).and(count.eq(birth));
+                // DYING cells and OFF cells that are not born end up OFF
+                ByteVector.zero(SPECIES)
+                        .blend((byte) Brain.ON, born)
+                        .blend((byte) Brain.DYING, isOn)
+                        .intoArray(next, k);
+                on += born.trueCount();
+                dying += isOn.trueCount();
+            }
+            // Scalar tail for the cells that do not fill a vector
+            for (; k < end; k++) {
+                int count = (cells[k - stride - 1] & 1) + (cells[k - stride] & 1) + (cells[k - stride + 1] & 1)
+                          + (cells[k - 1] & 1) + (cells[k + 1] & 1)
+                          + (cells[k + stride - 1] & 1) + (cells[k + stride] & 1) + (cells[k + stride + 1] & 1);
+                byte state = cells[k];
+                if (state == Brain.ON) {
+                    next[k] = Brain.DYING;
+                    dying++;
+                } else if (state == Brain.OFF && count == birthNumber) {
+                    next[k] = Brain.ON;
+                    on++;
+                } else {
+                    next[k] = Brain.OFF;
+                }
+            }
+        }
+        counts[Brain.OFF] = width * height - on - dying;
+        counts[Brain.ON] = on;
+        counts[Brain.DYING] = dying;
+    }
+}